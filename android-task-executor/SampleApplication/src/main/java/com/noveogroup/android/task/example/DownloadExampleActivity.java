@@ -42,9 +42,9 @@ public class DownloadExampleActivity extends ExampleActivity {
                             Utils.download(3000, 0.5);
                         } catch (IOException e) {
                             synchronized (env.lock()) {
-                                int tryNumber = env.args().get("tryNumber", 0);
+                                int tryNumber = env.args().getInt("tryNumber", 0);
                                 if (tryNumber < 3) {
-                                    env.args().put("tryNumber", tryNumber + 1);
+                                    env.args().putInt("tryNumber", tryNumber + 1);
                                     env.owner().execute(this);
                                 } else {
                                     throw e;
@@ -30,6 +30,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * {@link AbstractTaskExecutor} is an abstract implementation of
@@ -42,7 +43,13 @@ abstract class AbstractTaskExecutor implements TaskExecutor {
     private final Object lock = new Object();
     private final Pack args = new Pack(lock);
     private volatile ErrorHandler errorHandler = null;
+    private volatile ListenerDispatcher listenerDispatcher = null;
     private final ArrayList<TaskListener> listeners = new ArrayList<TaskListener>(8);
+    private volatile ListenerSet listenerSet = ListenerSet.EMPTY;
+    private final TaskMetrics metrics = new TaskMetrics();
+    private final ConcurrentHashMap<String, Long> timeouts = new ConcurrentHashMap<String, Long>();
+    private final ConcurrentHashMap<String, Integer> priorities = new ConcurrentHashMap<String, Integer>();
+    private final ConcurrentHashMap<String, Integer> concurrencyLimits = new ConcurrentHashMap<String, Integer>();
     private volatile boolean shutdown = false;
 
     @Override
@@ -79,18 +86,70 @@ abstract class AbstractTaskExecutor implements TaskExecutor {
     public abstract TaskSet queue(Collection<String> tags, Collection<TaskHandler.State> states);
 
     public ErrorHandler getErrorHandler() {
-        synchronized (lock()) {
-            return errorHandler;
-        }
+        return errorHandler;
     }
 
     @Override
     public void setErrorHandler(ErrorHandler errorHandler) {
-        synchronized (lock()) {
-            this.errorHandler = errorHandler;
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * Returns whether listener events are delivered asynchronously.
+     *
+     * @return {@code true} if asynchronous delivery is enabled.
+     * @see #setAsyncListenerDelivery(int, int)
+     */
+    public boolean isAsyncListenerDelivery() {
+        return listenerDispatcher != null;
+    }
+
+    /**
+     * Enables asynchronous delivery of listener events using one dispatcher
+     * thread and a buffer of 1024 events, or disables it.
+     *
+     * @param asyncListenerDelivery {@code true} to enable asynchronous delivery.
+     * @see #setAsyncListenerDelivery(int, int)
+     */
+    public void setAsyncListenerDelivery(boolean asyncListenerDelivery) {
+        if (asyncListenerDelivery) {
+            setAsyncListenerDelivery(1, 1024);
+        } else {
+            listenerDispatcher = null;
         }
     }
 
+    /**
+     * Enables asynchronous delivery of listener events.
+     * <p/>
+     * By default listeners are called by working threads, so a slow listener
+     * delays the next task. In asynchronous mode working threads put events
+     * into bounded buffers and return to execution of tasks right away while
+     * dispatcher threads call the listeners. The events of a task are
+     * delivered by one dispatcher thread in the usual order, the events of
+     * different tasks may be delivered concurrently. A working thread waits
+     * only if the buffer is full. {@link TaskHandler#join()} returns after
+     * {@link TaskListener#onDestroy(TaskHandler)} is delivered.
+     * <p/>
+     * The mode affects only tasks executed after the call.
+     *
+     * @param threadCount the number of dispatcher threads.
+     * @param capacity    the capacity of the buffer of each dispatcher thread.
+     */
+    public void setAsyncListenerDelivery(int threadCount, int capacity) {
+        listenerDispatcher = new ListenerDispatcher(threadCount, capacity);
+    }
+
+    /**
+     * Returns the dispatcher delivering listener events of new tasks.
+     *
+     * @return the dispatcher or {@code null} if events are delivered
+     * by working threads.
+     */
+    ListenerDispatcher getListenerDispatcher() {
+        return listenerDispatcher;
+    }
+
     @Override
     public void addTaskListener(TaskListener... taskListeners) {
         synchronized (lock()) {
@@ -99,6 +158,7 @@ abstract class AbstractTaskExecutor implements TaskExecutor {
                     listeners.add(listeners.size(), taskListener);
                 }
             }
+            listenerSet = new ListenerSet(listeners);
         }
     }
 
@@ -113,7 +173,116 @@ abstract class AbstractTaskExecutor implements TaskExecutor {
                     }
                 }
             }
+            listenerSet = new ListenerSet(listeners);
+        }
+    }
+
+    @Override
+    public TaskMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public long getTimeout(String tag) {
+        Long timeout = timeouts.get(tag);
+        return timeout != null ? timeout : 0;
+    }
+
+    @Override
+    public void setTimeout(String tag, long timeout) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException();
+        }
+        if (timeout == 0) {
+            timeouts.remove(tag);
+        } else {
+            timeouts.put(tag, timeout);
+        }
+    }
+
+    @Override
+    public int getPriority(String tag) {
+        Integer priority = priorities.get(tag);
+        return priority != null ? priority : 0;
+    }
+
+    @Override
+    public void setPriority(String tag, int priority) {
+        if (priority == 0) {
+            priorities.remove(tag);
+        } else {
+            priorities.put(tag, priority);
+        }
+    }
+
+    @Override
+    public int getConcurrencyLimit(String tag) {
+        Integer limit = concurrencyLimits.get(tag);
+        return limit != null ? limit : 0;
+    }
+
+    @Override
+    public void setConcurrencyLimit(String tag, int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException();
+        }
+        if (limit == 0) {
+            concurrencyLimits.remove(tag);
+        } else {
+            concurrencyLimits.put(tag, limit);
+        }
+    }
+
+    /**
+     * Returns whether concurrency limits of some tags are set.
+     *
+     * @return {@code true} if there are tags having a concurrency limit.
+     */
+    protected boolean hasConcurrencyLimits() {
+        return !concurrencyLimits.isEmpty();
+    }
+
+    /**
+     * Returns the priority of tasks labeled by the specified tags.
+     *
+     * @param tags the tags.
+     * @return the highest priority among the priorities of the tags or
+     * {@code 0} if there are no priorities set.
+     * @see #setPriority(String, int)
+     */
+    protected int getPriority(Collection<String> tags) {
+        if (priorities.isEmpty()) {
+            return 0;
+        }
+
+        Integer priority = null;
+        for (String tag : tags) {
+            Integer tagPriority = priorities.get(tag);
+            if (tagPriority != null && (priority == null || tagPriority > priority)) {
+                priority = tagPriority;
+            }
         }
+        return priority != null ? priority : 0;
+    }
+
+    /**
+     * Returns whether priorities of some tags are set.
+     *
+     * @return {@code true} if there are tags having non-zero priority.
+     */
+    protected boolean hasPriorities() {
+        return !priorities.isEmpty();
+    }
+
+    /**
+     * Returns a set of already added listeners. The set is shared between
+     * tasks, so it isn't copied for each task.
+     *
+     * @return a set containing the global listeners.
+     */
+    ListenerSet getListenerSet() {
+        // the set is immutable and published through a volatile field
+        return listenerSet;
     }
 
     /**
@@ -122,7 +291,11 @@ abstract class AbstractTaskExecutor implements TaskExecutor {
      *
      * @param addTaskListeners a list of additional listeners to add.
      * @return a list containing all of listeners.
+     * @deprecated tasks keep the shared set of the global listeners apart
+     * from their own listeners, so the executor doesn't use this method
+     * any more.
      */
+    @Deprecated
     protected List<TaskListener> copyTaskListeners(List<TaskListener> addTaskListeners) {
         synchronized (lock()) {
             List<TaskListener> list = new ArrayList<TaskListener>(listeners.size() + addTaskListeners.size());
@@ -165,6 +338,30 @@ abstract class AbstractTaskExecutor implements TaskExecutor {
         return execute(task, new Pack(), new ArrayList<TaskListener>(0), Arrays.asList(tags));
     }
 
+    @Override
+    public TaskGroup executeAll(Collection<? extends Task> tasks, Pack args, List<TaskListener> taskListeners, Collection<String> tags) {
+        List<TaskHandler> handlers = new ArrayList<TaskHandler>(tasks.size());
+        for (Task task : tasks) {
+            handlers.add(execute(task, args, taskListeners, tags));
+        }
+        return new TaskGroup(queue(tags), handlers);
+    }
+
+    @Override
+    public TaskGroup executeAll(Collection<? extends Task> tasks, String... tags) {
+        return executeAll(tasks, new Pack(), new ArrayList<TaskListener>(0), Arrays.asList(tags));
+    }
+
+    @Override
+    public <V> TaskFuture<V> submit(ValueTask<V> task, Pack args, List<TaskListener> taskListeners, Collection<String> tags) {
+        return TaskFuture.submit(this, task, args, taskListeners, tags);
+    }
+
+    @Override
+    public <V> TaskFuture<V> submit(ValueTask<V> task, String... tags) {
+        return submit(task, new Pack(), new ArrayList<TaskListener>(0), Arrays.asList(tags));
+    }
+
     @Override
     public void shutdown() {
         synchronized (lock()) {
@@ -27,60 +27,241 @@
 package com.noveogroup.android.task;
 
 import java.util.List;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * {@link AbstractTaskHandler} is an abstract implementation of
  * the {@link TaskHandler} interface. A subclass must implement the abstract
- * methods {@link #addToQueue()}, {@link #removeFromQueue()} and
- * {@link #createTaskEnvironment()}.
+ * methods {@link #addToQueue()}, {@link #updateQueue()},
+ * {@link #removeFromQueue()}, {@link #leaveThread()},
+ * {@link #dispatch(Runnable)} and {@link #createTaskEnvironment()}.
  */
 abstract class AbstractTaskHandler implements TaskHandler {
 
-    private final Object joinObject = new Object();
-    private final ExecutorService executorService;
-    private volatile Future<Throwable> taskFuture;
-    private volatile boolean taskFutureCanBeInterrupted;
+    private static final State[] STATES = State.values();
+
+    /**
+     * Lower bits of the state word keep an ordinal of the current {@link State}.
+     */
+    private static final int STATE_MASK = 0x07;
+
+    /**
+     * The task has an interrupt request.
+     */
+    private static final int INTERRUPTED = 0x08;
+
+    /**
+     * The task is running inside {@link Task#run(TaskEnvironment)} so its
+     * working thread can be interrupted.
+     */
+    private static final int INTERRUPTIBLE = 0x10;
+
+    /**
+     * Some thread is interrupting the working thread of the task right now.
+     * The working thread waits for the end of interruption before it leaves
+     * {@link Task#run(TaskEnvironment)} so the interruption can't affect
+     * anything else.
+     */
+    private static final int CANCELLING = 0x20;
+
+    /**
+     * The task has requested deferred completion using {@link #defer()}.
+     */
+    private static final int DEFERRED = 0x40;
+
+    /**
+     * {@link Task#run(TaskEnvironment)} of the deferred task has returned.
+     */
+    private static final int RETURNED = 0x80;
+
+    /**
+     * The continuation of the deferred task has been completed.
+     */
+    private static final int COMPLETED = 0x100;
+
+    /**
+     * The task is destroyed and all of the listeners are called, so
+     * joining threads can return.
+     */
+    private static final int RELEASED = 0x200;
+
+    /*
+     * Listener events are declared by ListenerSet. RELEASE isn't
+     * a listener event: it releases joining threads after the listeners.
+     */
+    private static final int ON_CREATE = ListenerSet.ON_CREATE;
+    private static final int ON_QUEUE_INSERT = ListenerSet.ON_QUEUE_INSERT;
+    private static final int ON_START = ListenerSet.ON_START;
+    private static final int ON_FINISH = ListenerSet.ON_FINISH;
+    private static final int ON_CANCELED = ListenerSet.ON_CANCELED;
+    private static final int ON_FAILED = ListenerSet.ON_FAILED;
+    private static final int ON_SUCCEED = ListenerSet.ON_SUCCEED;
+    private static final int ON_QUEUE_REMOVE = ListenerSet.ON_QUEUE_REMOVE;
+    private static final int ON_DESTROY = ListenerSet.ON_DESTROY;
+    private static final int RELEASE = ListenerSet.ALL_EVENTS + 1;
+
+    private static State getState(int word) {
+        return STATES[word & STATE_MASK];
+    }
+
+    private static int setState(int word, State state) {
+        return (word & ~STATE_MASK) | state.ordinal();
+    }
+
+    /**
+     * Holds a timer thread interrupting tasks whose timeouts have elapsed.
+     * <p/>
+     * Canceled timeouts stay in the queue of the timer until their delays
+     * elapse, so the queue is purged periodically. The remove-on-cancel
+     * policy isn't used because it requires Java 7 (Android API level 21).
+     */
+    private static class TimeoutScheduler {
+
+        private static final int PURGE_INTERVAL = 1000;
+        private static final AtomicInteger cancelCount = new AtomicInteger(0);
+        private static final ScheduledThreadPoolExecutor INSTANCE;
+
+        static {
+            INSTANCE = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "task-timeout");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+
+        public static void cancel(Future<?> future) {
+            future.cancel(false);
+            if (cancelCount.incrementAndGet() % PURGE_INTERVAL == 0) {
+                INSTANCE.purge();
+            }
+        }
+
+    }
+
+    /**
+     * Released when the task is destroyed and all of the listeners are
+     * called. A latch parks joining threads without holding a monitor.
+     * It is created by the first joining thread, so tasks nobody waits
+     * for don't allocate it.
+     */
+    private volatile CountDownLatch destroyLatch;
+    private final boolean singleHop;
+    private volatile Thread runner;
+    private final AtomicReference<Future<?>> timeoutFuture;
+    private volatile long timeout;
+
+    /*
+     * Timestamps of the lifecycle of the task. They are recorded by
+     * the threads processing the task using System.nanoTime(), which is
+     * cheap enough to do it for each task.
+     */
+    private final long createTime;
+    private volatile long queueInsertTime;
+    private volatile long startTime;
+    private volatile long finishTime;
+    private volatile long destroyTime;
+    private volatile long listenerTime;
 
     private final TaskExecutor executor;
     private final TaskSet owner;
     private final Task task;
     private final Pack args;
-    private final TaskListener[] listeners;
+    private final ListenerSet globalListeners;
+    private final ListenerSet listeners;
+    private final ListenerDispatcher dispatcher;
+    private final TaskMetrics metrics;
 
-    private volatile State state;
+    /**
+     * State word contains the state of the task and its flags. All of
+     * the transitions are made using CAS so the global lock isn't needed.
+     */
+    private final AtomicInteger stateWord;
     private volatile Throwable throwable;
-    private volatile boolean interrupted;
+    private volatile Throwable deferredThrowable;
+
+    /**
+     * Creates new instance of {@link AbstractTaskHandler}.
+     *
+     * @param task      {@link Task} interface to execute.
+     * @param executor  owner {@link TaskExecutor}.
+     * @param owner     owner {@link TaskSet}.
+     * @param args      arguments container.
+     * @param listeners a list of {@link TaskListener}.
+     * @param singleHop if {@code true} the task will be prepared and
+     *                  executed in one submission to the working threads.
+     */
+    public AbstractTaskHandler(Task task, TaskExecutor executor, TaskSet owner, Pack args, List<TaskListener> listeners, boolean singleHop) {
+        this(task, executor, owner, args, ListenerSet.EMPTY, new ListenerSet(listeners), singleHop, true);
+    }
 
     /**
      * Creates new instance of {@link AbstractTaskHandler}.
+     * <p/>
+     * If {@code create} is {@code false} the constructor neither adds
+     * the task to the queue nor dispatches it. The caller must add it to
+     * the queue itself and then call {@link #dispatchTask()}, so a batch of
+     * tasks can be added to the queue at once.
      *
-     * @param executorService {@link ExecutorService} providing as working threads.
-     * @param task            {@link Task} interface to execute.
-     * @param executor        owner {@link TaskExecutor}.
-     * @param owner           owner {@link TaskSet}.
-     * @param args            arguments container.
-     * @param listeners       a list of {@link TaskListener}.
+     * @param task      {@link Task} interface to execute.
+     * @param executor  owner {@link TaskExecutor}.
+     * @param owner     owner {@link TaskSet}.
+     * @param args      arguments container.
+     * @param globalListeners a set of global listeners of the executor
+     *                        shared between tasks.
+     * @param listeners       a set of own listeners of the task called
+     *                        after the global ones.
+     * @param singleHop       if {@code true} the task will be prepared and
+     *                        executed in one submission to the working threads.
+     * @param create          if {@code true} the task will be created right away.
      */
-    public AbstractTaskHandler(ExecutorService executorService, Task task, TaskExecutor executor, TaskSet owner, Pack args, List<TaskListener> listeners) {
-        this.executorService = executorService;
-        this.taskFuture = null;
-        this.taskFutureCanBeInterrupted = false;
+    AbstractTaskHandler(Task task, TaskExecutor executor, TaskSet owner, Pack args,
+                        ListenerSet globalListeners, ListenerSet listeners, boolean singleHop, boolean create) {
+        this.destroyLatch = null;
+        this.singleHop = singleHop;
+        this.runner = null;
+        this.timeoutFuture = new AtomicReference<Future<?>>(null);
+        this.timeout = 0;
+        this.createTime = System.nanoTime();
+        this.queueInsertTime = 0;
+        this.startTime = 0;
+        this.finishTime = 0;
+        this.destroyTime = 0;
+        this.listenerTime = 0;
 
         this.executor = executor;
         this.owner = owner;
         this.task = task;
-        this.args = args.lock() == owner.lock() ? args : new Pack(owner.lock(), args);
-        this.listeners = new TaskListener[listeners.size()];
-        listeners.toArray(this.listeners);
+        this.args = args.lock() == owner.lock() ? args : new Pack(new Object(), args);
+        this.globalListeners = globalListeners;
+        this.listeners = listeners;
+        this.dispatcher = executor instanceof AbstractTaskExecutor
+                ? ((AbstractTaskExecutor) executor).getListenerDispatcher() : null;
 
-        this.state = null;
+        this.stateWord = new AtomicInteger(State.CREATED.ordinal());
         this.throwable = null;
-        this.interrupted = false;
+
+        // metrics are recorded if they were enabled when the task was created
+        TaskMetrics metrics = executor.getMetrics();
+        this.metrics = metrics != null && metrics.isEnabled() ? metrics : null;
+        if (this.metrics != null) {
+            this.metrics.recordSubmitted(owner.tags());
+        }
 
         // create task
-        createTask();
+        if (create) {
+            addToQueue();
+            dispatchTask();
+        }
     }
 
     /**
@@ -105,67 +286,90 @@ abstract class AbstractTaskHandler implements TaskHandler {
      */
     protected abstract void removeFromQueue();
 
-    private void createTask() {
-        synchronized (lock()) {
-            interrupted = false;
-            state = State.CREATED;
-            throwable = null;
+    /**
+     * Task handler will call this method when its state is changed while
+     * it is in task queue.
+     */
+    protected abstract void updateQueue();
 
-            addToQueue();
+    /**
+     * Task handler will call this method when the task has left
+     * {@link Task#run(TaskEnvironment)} and doesn't occupy its working
+     * thread any more. A deferred task stays {@link State#STARTED} until
+     * its continuation is completed.
+     */
+    protected abstract void leaveThread();
 
-            executorService.submit(new Runnable() {
-                @Override
-                public void run() {
-                    prepareTask();
+    /**
+     * Task handler will call this method when it is needed to submit
+     * a runnable processing the task to working threads.
+     *
+     * @param runnable the runnable.
+     */
+    protected abstract void dispatch(Runnable runnable);
+
+    /**
+     * Dispatches the task which has already been added to the queue.
+     */
+    void dispatchTask() {
+        // the same runnable prepares the task and then executes it
+        dispatch(new Runnable() {
+            private boolean prepared = false;
+
+            @Override
+            public void run() {
+                if (prepared) {
+                    executeTask();
+                } else {
+                    prepared = true;
+                    if (prepareTask(this) && singleHop) {
+                        executeTask();
+                    }
                 }
-            });
-        }
+            }
+        });
     }
 
-    private void prepareTask() {
+    /**
+     * Calls creation callbacks and schedules execution of the task.
+     *
+     * @param runnable the runnable to submit to execute the task.
+     * @return {@code true} if the task is still alive after its preparation.
+     */
+    private boolean prepareTask(Runnable runnable) {
         if (isInterrupted()) {
-            // call listeners
-            callOnCreate();
-            callOnCanceled();
-            callOnDestroy();
+            // call listeners and release joining threads
+            fireEvents(ON_CREATE | ON_CANCELED | ON_DESTROY | RELEASE);
 
-            // notify join object
-            synchronized (joinObject) {
-                joinObject.notifyAll();
-            }
+            return false;
         } else {
-            callOnCreate();
-            callOnQueueInsert();
+            queueInsertTime = System.nanoTime();
+            fireEvents(ON_CREATE | ON_QUEUE_INSERT);
 
-            executorService.submit(new Runnable() {
-                @Override
-                public void run() {
-                    executeTask();
-                }
-            });
+            // in single-hop mode the task is executed by the caller right away
+            if (!singleHop) {
+                dispatch(runnable);
+            }
+
+            return true;
         }
     }
 
     private void executeTask() {
-        if (isInterrupted()) {
-            // call listeners
-            callOnCanceled();
-            callOnQueueRemove();
-            callOnDestroy();
-
-            // notify join object
-            synchronized (joinObject) {
-                joinObject.notifyAll();
-            }
+        // change state: an interrupted task has already been canceled
+        if (!stateWord.compareAndSet(State.CREATED.ordinal(), State.STARTED.ordinal())) {
+            // call listeners and release joining threads
+            fireEvents(ON_CANCELED | ON_QUEUE_REMOVE | ON_DESTROY | RELEASE);
         } else {
-            // change state
-            synchronized (lock()) {
-                state = State.STARTED;
-                throwable = null;
+            startTime = System.nanoTime();
+            if (metrics != null) {
+                metrics.recordStarted(owner.tags(), startTime - createTime);
             }
+            updateQueue();
+            scheduleTimeout();
 
             // call listeners
-            callOnStart();
+            fireEvents(ON_START);
 
             // create task environment
             TaskEnvironment env;
@@ -176,48 +380,199 @@ abstract class AbstractTaskHandler implements TaskHandler {
             // execute task
             Throwable t = null;
             try {
-                synchronized (lock()) {
-                    // allow interruption
-                    taskFutureCanBeInterrupted = true;
-
-                    // check if the task has already been interrupted
-                    if (isInterrupted()) {
+                // allow interruption if the task hasn't been interrupted yet
+                runner = Thread.currentThread();
+                while (true) {
+                    int word = stateWord.get();
+                    if ((word & INTERRUPTED) != 0) {
                         throw new InterruptedException();
                     }
+                    if (stateWord.compareAndSet(word, word | INTERRUPTIBLE)) {
+                        break;
+                    }
                 }
                 // run task
                 task.run(env);
             } catch (Throwable throwable) {
                 t = throwable;
-            } finally {
-                synchronized (lock()) {
-                    // deny interruption
-                    taskFutureCanBeInterrupted = false;
+            }
+
+            // deny interruption and complete the task unless it is deferred
+            int word = leaveTask(t == null);
+            leaveThread();
+            if (t != null || (word & DEFERRED) == 0) {
+                finishTask(t);
+            } else if ((word & COMPLETED) != 0) {
+                finishTask(deferredThrowable);
+            }
+        }
+    }
+
+    /**
+     * Denies interruption of the working thread when the task leaves
+     * {@link Task#run(TaskEnvironment)}.
+     *
+     * @param returned {@code true} if the task has returned normally.
+     * @return the state word before the change.
+     */
+    private int leaveTask(boolean returned) {
+        while (true) {
+            int word = stateWord.get();
+            if ((word & CANCELLING) != 0) {
+                // wait until the interruption is done
+                Thread.yield();
+            } else if (stateWord.compareAndSet(word, (word & ~INTERRUPTIBLE) | (returned ? RETURNED : 0))) {
+                if ((word & INTERRUPTED) != 0) {
+                    // clear interruption status of the working thread
+                    Thread.interrupted();
                 }
+                return word;
             }
+        }
+    }
 
-            // change task state and remove task from queue
-            synchronized (lock()) {
-                state = t == null ? State.SUCCEED : State.FAILED;
-                throwable = t;
-                removeFromQueue();
+    /**
+     * Changes the state of the started task, removes it from the queue
+     * and calls listeners.
+     */
+    private void finishTask(Throwable t) {
+        finishTime = System.nanoTime();
+        throwable = t;
+        State finalState = t == null ? State.SUCCEED : State.FAILED;
+        while (true) {
+            int word = stateWord.get();
+            if (stateWord.compareAndSet(word, setState(word, finalState))) {
+                break;
             }
+        }
+        cancelTimeout();
+        removeFromQueue();
 
-            // call listeners
-            callOnFinish();
-            if (t == null) {
-                callOnSucceed();
-            } else {
+        // call listeners and release joining threads
+        fireEvents(ON_FINISH | (t == null ? ON_SUCCEED : ON_FAILED) | ON_QUEUE_REMOVE | ON_DESTROY | RELEASE);
+    }
+
+    /**
+     * Calls listeners of the specified events. The events are delivered by
+     * the listener dispatcher of the executor if it is enabled, otherwise
+     * they are delivered right away by the calling thread.
+     *
+     * @param events a mask of events.
+     */
+    private void fireEvents(int events) {
+        if (dispatcher == null) {
+            deliverEvents(events);
+        } else {
+            dispatcher.post(this, events);
+        }
+    }
+
+    /**
+     * Calls listeners of the specified events in order of the lifecycle
+     * of the task.
+     *
+     * @param events a mask of events.
+     */
+    void deliverEvents(int events) {
+        // listeners are called sequentially, so the time can be summed up
+        long time = globalListeners.size() + listeners.size() != 0 ? System.nanoTime() : 0;
+
+        // joining threads are released even if an error handler throws
+        try {
+            if ((events & ON_CREATE) != 0) {
+                callOnCreate();
+            }
+            if ((events & ON_QUEUE_INSERT) != 0) {
+                callOnQueueInsert();
+            }
+            if ((events & ON_START) != 0) {
+                callOnStart();
+            }
+            if ((events & ON_FINISH) != 0) {
+                callOnFinish();
+            }
+            if ((events & ON_CANCELED) != 0) {
+                callOnCanceled();
+            }
+            if ((events & ON_FAILED) != 0) {
                 callOnFailed();
             }
-            callOnQueueRemove();
-            callOnDestroy();
+            if ((events & ON_SUCCEED) != 0) {
+                callOnSucceed();
+            }
+            if ((events & ON_QUEUE_REMOVE) != 0) {
+                callOnQueueRemove();
+            }
+            if ((events & ON_DESTROY) != 0) {
+                callOnDestroy();
+            }
+        } finally {
+            if (time != 0) {
+                listenerTime += System.nanoTime() - time;
+            }
+            if ((events & RELEASE) != 0) {
+                release();
+            }
+        }
+    }
 
-            // notify join object
-            synchronized (joinObject) {
-                joinObject.notifyAll();
+    /**
+     * Defers completion of the task until the returned continuation is
+     * completed. The task stays {@link State#STARTED} after it leaves
+     * {@link Task#run(TaskEnvironment)} but doesn't occupy its working
+     * thread any more.
+     *
+     * @return the continuation of the task.
+     * @throws IllegalStateException if the method is called outside of
+     *                               {@link Task#run(TaskEnvironment)} or
+     *                               completion is already deferred.
+     * @see TaskEnvironment#defer()
+     */
+    Continuation defer() {
+        while (true) {
+            int word = stateWord.get();
+            if ((word & INTERRUPTIBLE) == 0 || (word & DEFERRED) != 0) {
+                throw new IllegalStateException();
+            }
+            if (stateWord.compareAndSet(word, word | DEFERRED)) {
+                break;
             }
         }
+
+        return new Continuation() {
+            private final AtomicBoolean completed = new AtomicBoolean(false);
+
+            @Override
+            public void succeed() {
+                complete(null);
+            }
+
+            @Override
+            public void fail(Throwable throwable) {
+                if (throwable == null) {
+                    throw new NullPointerException();
+                }
+                complete(throwable);
+            }
+
+            private void complete(Throwable t) {
+                if (!completed.compareAndSet(false, true)) {
+                    throw new IllegalStateException();
+                }
+
+                deferredThrowable = t;
+                while (true) {
+                    int word = stateWord.get();
+                    if (stateWord.compareAndSet(word, word | COMPLETED)) {
+                        // the task has already returned so complete it right here
+                        if ((word & RETURNED) != 0) {
+                            finishTask(t);
+                        }
+                        break;
+                    }
+                }
+            }
+        };
     }
 
     @Override
@@ -247,94 +602,248 @@ abstract class AbstractTaskHandler implements TaskHandler {
 
     @Override
     public State getState() {
-        synchronized (lock()) {
-            return state;
-        }
+        return getState(stateWord.get());
     }
 
     @Override
     public Throwable getThrowable() {
-        synchronized (lock()) {
-            return throwable;
-        }
+        return throwable;
     }
 
     @Override
     public boolean isInterrupted() {
-        synchronized (lock()) {
-            return interrupted;
-        }
+        return (stateWord.get() & INTERRUPTED) != 0;
     }
 
     @Override
     public void interrupt() {
-        synchronized (lock()) {
-            interrupted = true;
-
-            switch (state) {
+        while (true) {
+            int word = stateWord.get();
+            switch (getState(word)) {
                 case CREATED:
-                    // remove from queue and set state to CANCELED
-                    state = State.CANCELED;
-                    throwable = null;
-                    removeFromQueue();
+                    // set state to CANCELED and remove from queue
+                    if (stateWord.compareAndSet(word, setState(word | INTERRUPTED, State.CANCELED))) {
+                        removeFromQueue();
+                        return;
+                    }
                     break;
                 case STARTED:
-                    // try to interrupt working thread if it exists and interruption is allowed
-                    if (taskFuture != null && taskFutureCanBeInterrupted) {
-                        if (task instanceof Interruptible) {
-                            Interruptible interruptible = (Interruptible) task;
-                            interruptible.interrupt();
+                    if ((word & INTERRUPTIBLE) == 0 || (word & CANCELLING) != 0) {
+                        // the task isn't running or is being interrupted now
+                        if (stateWord.compareAndSet(word, word | INTERRUPTED)) {
+                            return;
                         }
-                        taskFuture.cancel(true);
+                    } else if (stateWord.compareAndSet(word, word | INTERRUPTED | CANCELLING)) {
+                        // interrupt working thread while the task is not allowed to leave
+                        try {
+                            if (task instanceof Interruptible) {
+                                Interruptible interruptible = (Interruptible) task;
+                                interruptible.interrupt();
+                            }
+                            runner.interrupt();
+                        } finally {
+                            while (true) {
+                                int cancellingWord = stateWord.get();
+                                if (stateWord.compareAndSet(cancellingWord, cancellingWord & ~CANCELLING)) {
+                                    break;
+                                }
+                            }
+                        }
+                        return;
                     }
                     break;
                 default:
                     // in other states there are no need to do anything else
+                    if (stateWord.compareAndSet(word, word | INTERRUPTED)) {
+                        return;
+                    }
                     break;
             }
         }
     }
 
     @Override
-    public void join() throws InterruptedException {
-        join(0);
+    public long getTimeout() {
+        return timeout;
     }
 
     @Override
-    public boolean join(long timeout) throws InterruptedException {
-        synchronized (joinObject) {
-            if (timeout < 0) {
-                throw new IllegalArgumentException();
+    public void setTimeout(long timeout) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.timeout = timeout;
+        if (getState() == State.STARTED) {
+            scheduleTimeout();
+        }
+    }
+
+    /**
+     * Returns the shortest positive timeout among the timeout of the task
+     * and the timeouts of its tags.
+     */
+    private long getEffectiveTimeout() {
+        long effectiveTimeout = timeout;
+        for (String tag : owner.tags()) {
+            long tagTimeout = executor.getTimeout(tag);
+            if (tagTimeout > 0 && (effectiveTimeout == 0 || tagTimeout < effectiveTimeout)) {
+                effectiveTimeout = tagTimeout;
             }
+        }
+        return effectiveTimeout;
+    }
 
-            while (!getState().isDestroyed()) {
-                if (timeout == 0) {
-                    joinObject.wait();
-                } else {
-                    long time = System.nanoTime();
-                    joinObject.wait(timeout);
-                    timeout -= (System.nanoTime() - time) / 1000000;
+    private void scheduleTimeout() {
+        long effectiveTimeout = getEffectiveTimeout();
+        if (effectiveTimeout == 0) {
+            cancelTimeout();
+            return;
+        }
 
-                    if (timeout <= 0) {
-                        return false;
-                    }
+        long delay = TimeUnit.MILLISECONDS.toNanos(effectiveTimeout) - (System.nanoTime() - startTime);
+        Future<?> future = TimeoutScheduler.INSTANCE.schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (getState() == State.STARTED) {
+                    interrupt();
                 }
             }
+        }, delay, TimeUnit.NANOSECONDS);
+
+        // the replaced timeout is canceled by the thread replacing it
+        Future<?> oldFuture = timeoutFuture.getAndSet(future);
+        if (oldFuture != null) {
+            TimeoutScheduler.cancel(oldFuture);
+        }
+    }
+
+    private void cancelTimeout() {
+        // most of the tasks have no timeout, so nothing is written
+        if (timeoutFuture.get() != null) {
+            Future<?> future = timeoutFuture.getAndSet(null);
+            if (future != null) {
+                TimeoutScheduler.cancel(future);
+            }
+        }
+    }
+
+    @Override
+    public long getCreateTime() {
+        return createTime;
+    }
 
+    @Override
+    public long getQueueInsertTime() {
+        return queueInsertTime;
+    }
+
+    @Override
+    public long getStartTime() {
+        return startTime;
+    }
+
+    @Override
+    public long getFinishTime() {
+        return finishTime;
+    }
+
+    @Override
+    public long getDestroyTime() {
+        return destroyTime;
+    }
+
+    @Override
+    public long getQueueWaitTime() {
+        long startTime = this.startTime;
+        return startTime != 0 ? startTime - createTime : 0;
+    }
+
+    @Override
+    public long getRunTime() {
+        long finishTime = this.finishTime;
+        return finishTime != 0 ? finishTime - startTime : 0;
+    }
+
+    @Override
+    public long getListenerTime() {
+        return listenerTime;
+    }
+
+    @Override
+    public void join() throws InterruptedException {
+        join(0);
+    }
+
+    @Override
+    public boolean join(long timeout) throws InterruptedException {
+        if (timeout < 0) {
+            throw new IllegalArgumentException();
+        }
+
+        // a canceled task may never be processed by working threads,
+        // a finished one is just calling its listeners
+        if (getState() == State.CANCELED || isReleased()) {
+            return true;
+        }
+
+        // the latch must be created before the flag is checked again
+        CountDownLatch latch = getDestroyLatch();
+        if (isReleased()) {
+            return true;
+        } else if (timeout == 0) {
+            latch.await();
             return true;
+        } else {
+            return latch.await(timeout, TimeUnit.MILLISECONDS);
         }
     }
 
-    private void handleListenerError(TaskListener listener, Throwable throwable) {
-        synchronized (executor().lock()) {
-            ErrorHandler errorHandler = executor().getErrorHandler();
-            if (errorHandler != null) {
-                errorHandler.listenerError(listener, throwable);
+    private boolean isReleased() {
+        return (stateWord.get() & RELEASED) != 0;
+    }
+
+    private synchronized CountDownLatch getDestroyLatch() {
+        if (destroyLatch == null) {
+            destroyLatch = new CountDownLatch(1);
+        }
+        return destroyLatch;
+    }
+
+    /**
+     * Releases joining threads. The flag is set before the latch is read,
+     * so a thread creating the latch concurrently either sees the flag or
+     * has its latch released.
+     */
+    private void release() {
+        destroyTime = System.nanoTime();
+        if (metrics != null) {
+            metrics.recordDestroyed(owner.tags(), getState(), getRunTime());
+        }
+        while (true) {
+            int word = stateWord.get();
+            if (stateWord.compareAndSet(word, word | RELEASED)) {
+                break;
             }
         }
+        CountDownLatch latch = destroyLatch;
+        if (latch != null) {
+            latch.countDown();
+        }
+    }
+
+    private void handleListenerError(TaskListener listener, Throwable throwable) {
+        ErrorHandler errorHandler = executor().getErrorHandler();
+        if (errorHandler != null) {
+            errorHandler.listenerError(listener, throwable);
+        }
     }
 
     private void callOnCreate() {
+        callOnCreate(globalListeners.onCreate);
+        callOnCreate(listeners.onCreate);
+    }
+
+    private void callOnCreate(TaskListener[] listeners) {
         for (TaskListener listener : listeners) { // in direct order
             try {
                 listener.onCreate(this);
@@ -345,6 +854,11 @@ abstract class AbstractTaskHandler implements TaskHandler {
     }
 
     private void callOnQueueInsert() {
+        callOnQueueInsert(globalListeners.onQueueInsert);
+        callOnQueueInsert(listeners.onQueueInsert);
+    }
+
+    private void callOnQueueInsert(TaskListener[] listeners) {
         for (TaskListener listener : listeners) { // in direct order
             try {
                 listener.onQueueInsert(this);
@@ -355,6 +869,11 @@ abstract class AbstractTaskHandler implements TaskHandler {
     }
 
     private void callOnStart() {
+        callOnStart(globalListeners.onStart);
+        callOnStart(listeners.onStart);
+    }
+
+    private void callOnStart(TaskListener[] listeners) {
         for (TaskListener listener : listeners) { // in direct order
             try {
                 listener.onStart(this);
@@ -365,8 +884,12 @@ abstract class AbstractTaskHandler implements TaskHandler {
     }
 
     private void callOnFinish() {
-        for (int i = listeners.length - 1; i >= 0; i--) { // in reverse order
-            TaskListener listener = listeners[i];
+        callOnFinish(listeners.onFinish);
+        callOnFinish(globalListeners.onFinish);
+    }
+
+    private void callOnFinish(TaskListener[] listeners) {
+        for (TaskListener listener : listeners) { // in reverse order
             try {
                 listener.onFinish(this);
             } catch (Throwable throwable) {
@@ -376,8 +899,12 @@ abstract class AbstractTaskHandler implements TaskHandler {
     }
 
     private void callOnQueueRemove() {
-        for (int i = listeners.length - 1; i >= 0; i--) { // in reverse order
-            TaskListener listener = listeners[i];
+        callOnQueueRemove(listeners.onQueueRemove);
+        callOnQueueRemove(globalListeners.onQueueRemove);
+    }
+
+    private void callOnQueueRemove(TaskListener[] listeners) {
+        for (TaskListener listener : listeners) { // in reverse order
             try {
                 listener.onQueueRemove(this);
             } catch (Throwable throwable) {
@@ -387,8 +914,12 @@ abstract class AbstractTaskHandler implements TaskHandler {
     }
 
     private void callOnDestroy() {
-        for (int i = listeners.length - 1; i >= 0; i--) { // in reverse order
-            TaskListener listener = listeners[i];
+        callOnDestroy(listeners.onDestroy);
+        callOnDestroy(globalListeners.onDestroy);
+    }
+
+    private void callOnDestroy(TaskListener[] listeners) {
+        for (TaskListener listener : listeners) { // in reverse order
             try {
                 listener.onDestroy(this);
             } catch (Throwable throwable) {
@@ -398,8 +929,12 @@ abstract class AbstractTaskHandler implements TaskHandler {
     }
 
     private void callOnCanceled() {
-        for (int i = listeners.length - 1; i >= 0; i--) { // in reverse order
-            TaskListener listener = listeners[i];
+        callOnCanceled(listeners.onCanceled);
+        callOnCanceled(globalListeners.onCanceled);
+    }
+
+    private void callOnCanceled(TaskListener[] listeners) {
+        for (TaskListener listener : listeners) { // in reverse order
             try {
                 listener.onCanceled(this);
             } catch (Throwable throwable) {
@@ -409,8 +944,12 @@ abstract class AbstractTaskHandler implements TaskHandler {
     }
 
     private void callOnFailed() {
-        for (int i = listeners.length - 1; i >= 0; i--) { // in reverse order
-            TaskListener listener = listeners[i];
+        callOnFailed(listeners.onFailed);
+        callOnFailed(globalListeners.onFailed);
+    }
+
+    private void callOnFailed(TaskListener[] listeners) {
+        for (TaskListener listener : listeners) { // in reverse order
             try {
                 listener.onFailed(this);
             } catch (Throwable throwable) {
@@ -420,8 +959,12 @@ abstract class AbstractTaskHandler implements TaskHandler {
     }
 
     private void callOnSucceed() {
-        for (int i = listeners.length - 1; i >= 0; i--) { // in reverse order
-            TaskListener listener = listeners[i];
+        callOnSucceed(listeners.onSucceed);
+        callOnSucceed(globalListeners.onSucceed);
+    }
+
+    private void callOnSucceed(TaskListener[] listeners) {
+        for (TaskListener listener : listeners) { // in reverse order
             try {
                 listener.onSucceed(this);
             } catch (Throwable throwable) {
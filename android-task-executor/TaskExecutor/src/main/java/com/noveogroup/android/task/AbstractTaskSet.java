@@ -100,6 +100,16 @@ abstract class AbstractTaskSet implements TaskSet {
         return execute(task, new Pack(), taskListeners);
     }
 
+    @Override
+    public TaskGroup executeAll(Collection<? extends Task> tasks, TaskListener... taskListeners) {
+        return executor().executeAll(tasks, new Pack(), Arrays.asList(taskListeners), tags());
+    }
+
+    @Override
+    public <V> TaskFuture<V> submit(ValueTask<V> task, TaskListener... taskListeners) {
+        return executor().submit(task, new Pack(), Arrays.asList(taskListeners), tags());
+    }
+
     @Override
     public int size() {
         int size = 0;
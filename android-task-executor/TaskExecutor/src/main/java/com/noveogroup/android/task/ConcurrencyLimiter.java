@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2014 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.noveogroup.android.task;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link ConcurrencyLimiter} limits the number of concurrently running
+ * tasks per tag. A task which is not allowed to run waits in the waiting
+ * queue of a tag whose limit is reached and doesn't occupy a working thread.
+ * It is dispatched as soon as running tasks release their permits.
+ * <p/>
+ * A subclass must implement the abstract methods {@link #getLimit(String)}
+ * and {@link #dispatch(TaskHandler, Runnable)}.
+ */
+abstract class ConcurrencyLimiter {
+
+    private static class Entry {
+
+        private final TaskHandler handler;
+        private final Runnable runnable;
+
+        private Entry(TaskHandler handler, Runnable runnable) {
+            this.handler = handler;
+            this.runnable = runnable;
+        }
+
+    }
+
+    private final Object lock = new Object();
+    private final Map<String, Integer> running = new HashMap<String, Integer>();
+    private final Map<String, LinkedList<Entry>> waiting = new HashMap<String, LinkedList<Entry>>();
+    private final Map<TaskHandler, List<String>> permits = new HashMap<TaskHandler, List<String>>();
+    private final Map<TaskHandler, String> waitingTags = new HashMap<TaskHandler, String>();
+    private volatile boolean used = false;
+
+    /**
+     * Returns the maximum number of concurrently running tasks labeled by
+     * the specified tag.
+     *
+     * @param tag the tag.
+     * @return the limit or {@code 0} if there is no limit.
+     */
+    protected abstract int getLimit(String tag);
+
+    /**
+     * Submits a runnable of the task which was allowed to run to working threads.
+     * This method is never called while the lock of the limiter is held.
+     *
+     * @param handler  the task handler.
+     * @param runnable the runnable.
+     */
+    protected abstract void dispatch(TaskHandler handler, Runnable runnable);
+
+    /**
+     * Returns a limited tag whose limit is reached or {@code null} if
+     * the task is allowed to run.
+     */
+    private String findBlockingTag(TaskHandler handler) {
+        for (String tag : handler.owner().tags()) {
+            int limit = getLimit(tag);
+            if (limit > 0) {
+                Integer count = running.get(tag);
+                if (count != null && count >= limit) {
+                    return tag;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void acquire(TaskHandler handler) {
+        List<String> tags = new ArrayList<String>(1);
+        for (String tag : handler.owner().tags()) {
+            if (getLimit(tag) > 0) {
+                Integer count = running.get(tag);
+                running.put(tag, count == null ? 1 : count + 1);
+                tags.add(tag);
+            }
+        }
+        permits.put(handler, tags);
+    }
+
+    private void enqueue(String tag, Entry entry) {
+        LinkedList<Entry> list = waiting.get(tag);
+        if (list == null) {
+            list = new LinkedList<Entry>();
+            waiting.put(tag, list);
+        }
+        list.addLast(entry);
+        waitingTags.put(entry.handler, tag);
+    }
+
+    /**
+     * Checks if the task is allowed to run. If so the task acquires permits
+     * of its limited tags, otherwise it is put to the waiting queue.
+     * A task which has already acquired its permits or has been canceled is
+     * always allowed to run.
+     *
+     * @param handler  the task handler.
+     * @param runnable the runnable to dispatch when the task is allowed to run.
+     * @return {@code true} if the runnable can be dispatched right away.
+     */
+    public boolean admit(TaskHandler handler, Runnable runnable) {
+        synchronized (lock) {
+            if (permits.containsKey(handler) || handler.getState() != TaskHandler.State.CREATED) {
+                return true;
+            }
+
+            used = true;
+            String tag = findBlockingTag(handler);
+            if (tag == null) {
+                acquire(handler);
+                return true;
+            } else {
+                enqueue(tag, new Entry(handler, runnable));
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Releases the permits of the task and removes it from the waiting queue.
+     * Dispatches the runnable of the task if it was waiting, so
+     * a canceled task can be processed, and the runnables of the waiting
+     * tasks which have been allowed to run.
+     * <p/>
+     * The method can be called more than once for the same task: when
+     * the task leaves its working thread and when it is removed from
+     * the queue. Only the first call releases the permits.
+     *
+     * @param handler the task handler.
+     */
+    public void release(TaskHandler handler) {
+        if (!used) {
+            return;
+        }
+
+        List<Entry> entries = new ArrayList<Entry>(1);
+        synchronized (lock) {
+            // remove the task from the waiting queue
+            String waitingTag = waitingTags.remove(handler);
+            if (waitingTag != null) {
+                LinkedList<Entry> list = waiting.get(waitingTag);
+                for (Iterator<Entry> iterator = list.iterator(); iterator.hasNext(); ) {
+                    Entry entry = iterator.next();
+                    if (entry.handler == handler) {
+                        iterator.remove();
+                        entries.add(entry);
+                        break;
+                    }
+                }
+                if (list.isEmpty()) {
+                    waiting.remove(waitingTag);
+                }
+            }
+
+            // release permits and admit waiting tasks
+            List<String> tags = permits.remove(handler);
+            if (tags != null) {
+                for (String tag : tags) {
+                    int count = running.get(tag) - 1;
+                    if (count == 0) {
+                        running.remove(tag);
+                    } else {
+                        running.put(tag, count);
+                    }
+                }
+                for (String tag : tags) {
+                    admitWaiting(tag, entries);
+                }
+            }
+        }
+
+        for (Entry entry : entries) {
+            dispatch(entry.handler, entry.runnable);
+        }
+    }
+
+    /**
+     * Dispatches the waiting tasks which are allowed to run after the limit
+     * of the specified tag has been changed.
+     *
+     * @param tag the tag.
+     */
+    public void update(String tag) {
+        List<Entry> entries = new ArrayList<Entry>(1);
+        synchronized (lock) {
+            admitWaiting(tag, entries);
+        }
+
+        for (Entry entry : entries) {
+            dispatch(entry.handler, entry.runnable);
+        }
+    }
+
+    private void admitWaiting(String tag, List<Entry> entries) {
+        LinkedList<Entry> list = waiting.get(tag);
+        while (list != null && !list.isEmpty()) {
+            Entry entry = list.getFirst();
+            String blockingTag = findBlockingTag(entry.handler);
+            if (tag.equals(blockingTag)) {
+                break;
+            }
+
+            list.removeFirst();
+            waitingTags.remove(entry.handler);
+            if (blockingTag == null) {
+                acquire(entry.handler);
+                entries.add(entry);
+            } else {
+                // the task is still blocked by another tag
+                enqueue(blockingTag, entry);
+            }
+        }
+        if (list != null && list.isEmpty()) {
+            waiting.remove(tag);
+        }
+    }
+
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2014 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.noveogroup.android.task;
+
+/**
+ * Completes a task whose completion was deferred by
+ * {@link TaskEnvironment#defer()}.
+ * <p/>
+ * Only one of the methods can be called and only once. The task is finished
+ * when both {@link Task#run(TaskEnvironment)} has returned and
+ * the continuation has been completed, so the methods can be called from
+ * any thread including the working thread of the task itself.
+ */
+public interface Continuation {
+
+    /**
+     * Completes the task successfully.
+     *
+     * @throws IllegalStateException if the continuation has already been completed.
+     */
+    public void succeed();
+
+    /**
+     * Completes the task with an error. The error will be returned by
+     * {@link TaskHandler#getThrowable()}.
+     *
+     * @param throwable the error.
+     * @throws IllegalStateException if the continuation has already been completed.
+     */
+    public void fail(Throwable throwable);
+
+}
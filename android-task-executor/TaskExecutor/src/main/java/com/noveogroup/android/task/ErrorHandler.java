@@ -44,6 +44,8 @@ public interface ErrorHandler {
 
     /**
      * Should be called when method of {@link TaskListener} throws a throwable.
+     * <p/>
+     * The method can be called by several threads simultaneously.
      *
      * @param taskListener the task listener.
      * @param throwable    the throwable.
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2014 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.noveogroup.android.task;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * {@link ForkJoinTaskExecutor} is an implementation of the {@link TaskExecutor}
+ * interface running tasks in a work-stealing {@code java.util.concurrent.ForkJoinPool}.
+ * <p/>
+ * Tasks executed from inside of a working thread of the pool, for example
+ * subtasks executed by a running task using {@code env.owner().execute(...)},
+ * are pushed to the local deque of the working thread instead of
+ * the shared submission queue. The working thread takes them back in LIFO
+ * order while the idle threads steal the oldest ones, so recursive
+ * decomposition keeps its data in the cache of the thread. Tags, listeners,
+ * priorities and queries of task sets work the same way as in
+ * {@link SimpleTaskExecutor}.
+ * <p/>
+ * Tasks shouldn't block waiting for their subtasks, it is better to
+ * compose them using {@link Tasks} or {@link TaskEnvironment#defer()}.
+ * <p/>
+ * The fork-join framework requires Java 7 or Android API level 21, so it
+ * is accessed using reflection and this library still runs on older
+ * platforms. Use {@link #isSupported()} to check whether the executor
+ * can be created.
+ */
+public class ForkJoinTaskExecutor extends SimpleTaskExecutor {
+
+    private static final Class<?> POOL_CLASS;
+    private static final Method GET_POOL;
+    private static final Method ADAPT;
+    private static final Method FORK;
+
+    static {
+        Class<?> poolClass = null;
+        Method getPool = null;
+        Method adapt = null;
+        Method fork = null;
+        try {
+            poolClass = Class.forName("java.util.concurrent.ForkJoinPool");
+            Class<?> taskClass = Class.forName("java.util.concurrent.ForkJoinTask");
+            getPool = taskClass.getMethod("getPool");
+            adapt = taskClass.getMethod("adapt", Runnable.class);
+            fork = taskClass.getMethod("fork");
+        } catch (Exception e) {
+            // the fork-join framework is not supported
+            poolClass = null;
+        }
+        POOL_CLASS = poolClass;
+        GET_POOL = getPool;
+        ADAPT = adapt;
+        FORK = fork;
+    }
+
+    /**
+     * Returns whether the platform supports the fork-join framework.
+     *
+     * @return {@code true} if {@link ForkJoinTaskExecutor} can be created.
+     */
+    public static boolean isSupported() {
+        return POOL_CLASS != null;
+    }
+
+    /**
+     * Creates a new {@code ForkJoinPool} if the platform supports it.
+     *
+     * @param parallelism the parallelism level of the pool.
+     * @return the pool or {@code null} if the fork-join framework is
+     * not supported.
+     */
+    public static ExecutorService newForkJoinPool(int parallelism) {
+        if (!isSupported()) {
+            return null;
+        }
+        try {
+            return (ExecutorService) POOL_CLASS.getConstructor(int.class).newInstance(parallelism);
+        } catch (InvocationTargetException e) {
+            throw rethrow(e);
+        } catch (Exception e) {
+            throw new UnsupportedOperationException(e.toString());
+        }
+    }
+
+    private static RuntimeException rethrow(InvocationTargetException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+            throw (Error) cause;
+        } else {
+            throw new RuntimeException(cause);
+        }
+    }
+
+    private final ExecutorService pool;
+
+    /**
+     * Creates new instance of {@link ForkJoinTaskExecutor} using a pool
+     * whose parallelism is equal to the number of available processors.
+     *
+     * @throws UnsupportedOperationException if the fork-join framework is
+     *                                       not supported.
+     */
+    public ForkJoinTaskExecutor() {
+        this(newForkJoinPool(Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Creates new instance of {@link ForkJoinTaskExecutor}.
+     *
+     * @param pool the {@code ForkJoinPool} to run tasks.
+     * @throws UnsupportedOperationException if the fork-join framework is
+     *                                       not supported.
+     * @throws IllegalArgumentException      if the pool isn't
+     *                                       a {@code ForkJoinPool}.
+     */
+    public ForkJoinTaskExecutor(ExecutorService pool) {
+        super(pool);
+        if (!isSupported()) {
+            throw new UnsupportedOperationException();
+        }
+        if (!POOL_CLASS.isInstance(pool)) {
+            throw new IllegalArgumentException();
+        }
+        this.pool = pool;
+    }
+
+    /**
+     * Returns the pool running tasks of this executor.
+     *
+     * @return the {@code ForkJoinPool}.
+     */
+    public ExecutorService getPool() {
+        return pool;
+    }
+
+    @Override
+    protected void submit(Runnable runnable) {
+        try {
+            if (GET_POOL.invoke(null) == pool) {
+                // push to the local deque of the current working thread
+                FORK.invoke(ADAPT.invoke(null, runnable));
+            } else {
+                pool.execute(runnable);
+            }
+        } catch (InvocationTargetException e) {
+            throw rethrow(e);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e.toString());
+        }
+    }
+
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2014 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.noveogroup.android.task;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link ListenerDispatcher} delivers listener events of tasks
+ * asynchronously, so working threads don't wait for listeners.
+ * <p/>
+ * Events are put into bounded ring buffers drained by dispatcher threads.
+ * All of the events of a task go to the same buffer so they are delivered
+ * in order. A working thread posting an event to a full buffer waits for
+ * free space. A dispatcher thread never waits: listeners can execute and
+ * complete other tasks, so the buffer grows instead.
+ * <p/>
+ * Dispatcher threads are started on demand and stop after they have been
+ * idle for a while.
+ */
+class ListenerDispatcher {
+
+    private static final long KEEP_ALIVE_TIME = 1000;
+
+    private static class DispatcherThread extends Thread {
+
+        private DispatcherThread(Runnable runnable) {
+            super(runnable, "task-listener-dispatcher");
+            setDaemon(true);
+        }
+
+    }
+
+    private static class RingBuffer implements Runnable {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition notEmpty = lock.newCondition();
+        private final Condition notFull = lock.newCondition();
+        private final int capacity;
+        private AbstractTaskHandler[] handlers;
+        private int[] events;
+        private int head = 0;
+        private int size = 0;
+        private boolean running = false;
+
+        private RingBuffer(int capacity) {
+            this.capacity = capacity;
+            this.handlers = new AbstractTaskHandler[capacity];
+            this.events = new int[capacity];
+        }
+
+        private void grow() {
+            AbstractTaskHandler[] newHandlers = new AbstractTaskHandler[handlers.length * 2];
+            int[] newEvents = new int[events.length * 2];
+            for (int i = 0; i < size; i++) {
+                int index = (head + i) % handlers.length;
+                newHandlers[i] = handlers[index];
+                newEvents[i] = events[index];
+            }
+            handlers = newHandlers;
+            events = newEvents;
+            head = 0;
+        }
+
+        public void put(AbstractTaskHandler handler, int eventMask) {
+            lock.lock();
+            try {
+                if (!(Thread.currentThread() instanceof DispatcherThread)) {
+                    while (size >= capacity) {
+                        notFull.awaitUninterruptibly();
+                    }
+                }
+                if (size == handlers.length) {
+                    grow();
+                }
+
+                int index = (head + size) % handlers.length;
+                handlers[index] = handler;
+                events[index] = eventMask;
+                size++;
+                notEmpty.signal();
+
+                if (!running) {
+                    running = true;
+                    new DispatcherThread(this).start();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                AbstractTaskHandler handler;
+                int eventMask;
+
+                lock.lock();
+                try {
+                    long remaining = TimeUnit.MILLISECONDS.toNanos(KEEP_ALIVE_TIME);
+                    while (size == 0) {
+                        if (remaining <= 0) {
+                            running = false;
+                            return;
+                        }
+                        try {
+                            remaining = notEmpty.awaitNanos(remaining);
+                        } catch (InterruptedException ignored) {
+                        }
+                    }
+
+                    handler = handlers[head];
+                    eventMask = events[head];
+                    handlers[head] = null;
+                    head = (head + 1) % handlers.length;
+                    size--;
+                    notFull.signal();
+                } finally {
+                    lock.unlock();
+                }
+
+                try {
+                    handler.deliverEvents(eventMask);
+                } catch (Throwable ignored) {
+                    // a throwing error handler mustn't stop delivery of the other events
+                }
+            }
+        }
+
+    }
+
+    private final RingBuffer[] buffers;
+
+    /**
+     * Creates new instance of {@link ListenerDispatcher}.
+     *
+     * @param threadCount the number of dispatcher threads.
+     * @param capacity    the capacity of the buffer of each thread.
+     */
+    public ListenerDispatcher(int threadCount, int capacity) {
+        if (threadCount <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException();
+        }
+
+        this.buffers = new RingBuffer[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            buffers[i] = new RingBuffer(capacity);
+        }
+    }
+
+    /**
+     * Posts listener events of the task.
+     *
+     * @param handler the task handler.
+     * @param events  a mask of events.
+     */
+    public void post(AbstractTaskHandler handler, int events) {
+        int index = (System.identityHashCode(handler) & Integer.MAX_VALUE) % buffers.length;
+        buffers[index].put(handler, events);
+    }
+
+}
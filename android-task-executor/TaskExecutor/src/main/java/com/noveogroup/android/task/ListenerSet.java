@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2014 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.noveogroup.android.task;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link ListenerSet} is an immutable set of task listeners prepared for
+ * dispatching events. For each event it keeps an array of listeners
+ * which actually handle the event in order of calling: creation events
+ * are delivered in direct order, the other events in reverse order.
+ * <p/>
+ * A listener extending {@link TaskListener.Default} is supposed to handle
+ * only the events whose methods it overrides. The overridden methods are
+ * found using reflection once per class of listeners. So an event nobody
+ * handles costs nothing and a listener set can be shared between tasks.
+ * <p/>
+ * A task keeps the shared set of global listeners of its executor and
+ * a separate set of its own listeners, so own listeners of the task don't
+ * require to copy the global ones.
+ */
+final class ListenerSet {
+
+    /*
+     * Listener events in order of the lifecycle of a task. The bits are
+     * used both for masks of listeners and for masks of events delivered
+     * by task handlers.
+     */
+    static final int ON_CREATE = 0x001;
+    static final int ON_QUEUE_INSERT = 0x002;
+    static final int ON_START = 0x004;
+    static final int ON_FINISH = 0x008;
+    static final int ON_CANCELED = 0x010;
+    static final int ON_FAILED = 0x020;
+    static final int ON_SUCCEED = 0x040;
+    static final int ON_QUEUE_REMOVE = 0x080;
+    static final int ON_DESTROY = 0x100;
+    static final int ALL_EVENTS = 0x1FF;
+
+    /**
+     * Names of the methods of the events, the i-th name is of the event
+     * whose bit is {@code 1 << i}.
+     */
+    private static final String[] METHOD_NAMES = {
+            "onCreate", "onQueueInsert", "onStart",
+            "onFinish", "onCanceled", "onFailed",
+            "onSucceed", "onQueueRemove", "onDestroy",
+    };
+
+    private static final ConcurrentHashMap<Class<?>, Integer> masks = new ConcurrentHashMap<Class<?>, Integer>();
+
+    public static final ListenerSet EMPTY = new ListenerSet(new TaskListener[0]);
+
+    /**
+     * Returns a mask of events handled by listeners of the specified class.
+     */
+    private static int getMask(Class<?> listenerClass) {
+        Integer mask = masks.get(listenerClass);
+        if (mask == null) {
+            mask = calculateMask(listenerClass);
+            masks.put(listenerClass, mask);
+        }
+        return mask;
+    }
+
+    private static int calculateMask(Class<?> listenerClass) {
+        if (!TaskListener.Default.class.isAssignableFrom(listenerClass)) {
+            return ALL_EVENTS;
+        }
+
+        int mask = 0;
+        for (int i = 0; i < METHOD_NAMES.length; i++) {
+            try {
+                Class<?> declaringClass = listenerClass.getMethod(METHOD_NAMES[i], TaskHandler.class).getDeclaringClass();
+                if (declaringClass != TaskListener.Default.class) {
+                    mask |= 1 << i;
+                }
+            } catch (Exception e) {
+                // the method can't be checked so call it anyway
+                mask |= 1 << i;
+            }
+        }
+        return mask;
+    }
+
+    private final TaskListener[] listeners;
+
+    public final TaskListener[] onCreate;
+    public final TaskListener[] onQueueInsert;
+    public final TaskListener[] onStart;
+    public final TaskListener[] onFinish;
+    public final TaskListener[] onQueueRemove;
+    public final TaskListener[] onDestroy;
+    public final TaskListener[] onCanceled;
+    public final TaskListener[] onFailed;
+    public final TaskListener[] onSucceed;
+
+    /**
+     * Creates new instance of {@link ListenerSet}.
+     *
+     * @param listeners a list of listeners.
+     */
+    public ListenerSet(List<TaskListener> listeners) {
+        this(listeners.toArray(new TaskListener[listeners.size()]));
+    }
+
+    /**
+     * Returns a set of the specified listeners. An empty list gives
+     * {@link #EMPTY}, so it isn't allocated for each task.
+     *
+     * @param listeners a list of listeners.
+     * @return a set containing the listeners.
+     */
+    public static ListenerSet of(List<TaskListener> listeners) {
+        return listeners.isEmpty() ? EMPTY : new ListenerSet(listeners);
+    }
+
+    private ListenerSet(TaskListener[] listeners) {
+        this.listeners = listeners;
+
+        int[] masks = new int[listeners.length];
+        for (int i = 0; i < listeners.length; i++) {
+            masks[i] = getMask(listeners[i].getClass());
+        }
+
+        this.onCreate = select(masks, ON_CREATE, false);
+        this.onQueueInsert = select(masks, ON_QUEUE_INSERT, false);
+        this.onStart = select(masks, ON_START, false);
+        this.onFinish = select(masks, ON_FINISH, true);
+        this.onQueueRemove = select(masks, ON_QUEUE_REMOVE, true);
+        this.onDestroy = select(masks, ON_DESTROY, true);
+        this.onCanceled = select(masks, ON_CANCELED, true);
+        this.onFailed = select(masks, ON_FAILED, true);
+        this.onSucceed = select(masks, ON_SUCCEED, true);
+    }
+
+    private TaskListener[] select(int[] masks, int event, boolean reverse) {
+        int count = 0;
+        for (int mask : masks) {
+            if ((mask & event) != 0) {
+                count++;
+            }
+        }
+        if (count == listeners.length && (!reverse || count <= 1)) {
+            return listeners;
+        }
+
+        TaskListener[] selected = new TaskListener[count];
+        int index = 0;
+        for (int i = 0; i < listeners.length; i++) {
+            int j = reverse ? listeners.length - 1 - i : i;
+            if ((masks[j] & event) != 0) {
+                selected[index++] = listeners[j];
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Returns the number of listeners in this set.
+     *
+     * @return the number of listeners.
+     */
+    public int size() {
+        return listeners.length;
+    }
+
+}
@@ -28,9 +28,11 @@ package com.noveogroup.android.task;
 
 import java.util.AbstractSet;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A {@link Pack} is a data structure consisting of a set of arguments.
@@ -43,11 +45,292 @@ import java.util.Set;
  * Any access to the pack is synchronized using a special object returning
  * by {@link Pack#lock()} method. This object can be used outside of pack
  * to synchronize complex and dependent sequences of accesses/updates.
+ * <p/>
+ * Copying of a pack is cheap: the copy shares the arguments with
+ * the original pack until one of them is modified.
+ * <p/>
+ * Frequently used arguments can be accessed using typed {@link Key}
+ * constants. The values of such arguments are stored in an array indexed
+ * by the slots of the keys, so accessing them doesn't need hashing of
+ * strings. A key and a string equal to its name refer to the same argument.
+ * <p/>
+ * Primitive values can be accessed using methods like {@link #getInt(String, int)}
+ * and {@link #incrementInt(String)}. Such values are stored in mutable cells
+ * and updated in place, so counters kept in a pack produce no garbage.
  */
 public final class Pack implements Cloneable, Iterable<String> {
 
+    /**
+     * A typed key of an argument.
+     * <p/>
+     * Each key is resolved once to a dense slot index which is used to
+     * access the value of the argument directly. Keys are registered
+     * globally: there is exactly one key for each name, so a key should
+     * be created once and stored in a constant.
+     *
+     * @param <T> the type of the value.
+     */
+    public static final class Key<T> {
+
+        private static final Object registryLock = new Object();
+        private static final ConcurrentHashMap<String, Key<?>> keys = new ConcurrentHashMap<String, Key<?>>();
+        private static volatile Key<?>[] slots = new Key<?>[0];
+
+        /**
+         * Returns the key having the specified name creating it if needed.
+         * <p/>
+         * The type of the value isn't checked, so the keys of the same name
+         * must have the same type.
+         *
+         * @param name the name of the key.
+         * @param <T>  the type of the value.
+         * @return the key.
+         */
+        @SuppressWarnings("unchecked")
+        public static <T> Key<T> of(String name) {
+            if (name == null) {
+                throw new NullPointerException();
+            }
+
+            Key<?> key = keys.get(name);
+            if (key == null) {
+                synchronized (registryLock) {
+                    key = keys.get(name);
+                    if (key == null) {
+                        Key<?>[] oldSlots = slots;
+                        Key<?>[] newSlots = new Key<?>[oldSlots.length + 1];
+                        System.arraycopy(oldSlots, 0, newSlots, 0, oldSlots.length);
+                        key = newSlots[oldSlots.length] = new Key<Object>(name, oldSlots.length);
+                        slots = newSlots;
+                        keys.put(name, key);
+                    }
+                }
+            }
+            return (Key<T>) key;
+        }
+
+        /**
+         * Returns the key having the specified name.
+         *
+         * @param name the name of the key.
+         * @return the key or {@code null} if there is no such key.
+         */
+        static Key<?> find(String name) {
+            return name != null ? keys.get(name) : null;
+        }
+
+        /**
+         * Returns the key resolved to the specified slot.
+         *
+         * @param slot the slot index.
+         * @return the key.
+         */
+        static Key<?> get(int slot) {
+            return slots[slot];
+        }
+
+        private final String name;
+        private final int slot;
+
+        private Key(String name, int slot) {
+            this.name = name;
+            this.slot = slot;
+        }
+
+        /**
+         * Returns the name of this key.
+         *
+         * @return the name.
+         */
+        public String name() {
+            return name;
+        }
+
+        /**
+         * Returns the slot index of this key.
+         *
+         * @return the slot index.
+         */
+        int slot() {
+            return slot;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+
+    }
+
+    /**
+     * A mutable cell storing a primitive value. Cells are never shared
+     * between packs, they are copied together with the arguments.
+     */
+    private static abstract class Cell extends Number {
+
+        private static final long serialVersionUID = 1L;
+
+        public abstract Cell copy();
+
+        public abstract Object box();
+
+    }
+
+    private static final class IntCell extends Cell {
+
+        private static final long serialVersionUID = 1L;
+
+        private int value;
+
+        public IntCell(int value) {
+            this.value = value;
+        }
+
+        @Override
+        public int intValue() {
+            return value;
+        }
+
+        @Override
+        public long longValue() {
+            return value;
+        }
+
+        @Override
+        public float floatValue() {
+            return value;
+        }
+
+        @Override
+        public double doubleValue() {
+            return value;
+        }
+
+        @Override
+        public Cell copy() {
+            return new IntCell(value);
+        }
+
+        @Override
+        public Object box() {
+            return value;
+        }
+
+    }
+
+    private static final class LongCell extends Cell {
+
+        private static final long serialVersionUID = 1L;
+
+        private long value;
+
+        public LongCell(long value) {
+            this.value = value;
+        }
+
+        @Override
+        public int intValue() {
+            return (int) value;
+        }
+
+        @Override
+        public long longValue() {
+            return value;
+        }
+
+        @Override
+        public float floatValue() {
+            return value;
+        }
+
+        @Override
+        public double doubleValue() {
+            return value;
+        }
+
+        @Override
+        public Cell copy() {
+            return new LongCell(value);
+        }
+
+        @Override
+        public Object box() {
+            return value;
+        }
+
+    }
+
+    private static final class DoubleCell extends Cell {
+
+        private static final long serialVersionUID = 1L;
+
+        private double value;
+
+        public DoubleCell(double value) {
+            this.value = value;
+        }
+
+        @Override
+        public int intValue() {
+            return (int) value;
+        }
+
+        @Override
+        public long longValue() {
+            return (long) value;
+        }
+
+        @Override
+        public float floatValue() {
+            return (float) value;
+        }
+
+        @Override
+        public double doubleValue() {
+            return value;
+        }
+
+        @Override
+        public Cell copy() {
+            return new DoubleCell(value);
+        }
+
+        @Override
+        public Object box() {
+            return value;
+        }
+
+    }
+
+    /**
+     * Marks {@code null} values in {@link #values} to distinguish them
+     * from absent ones.
+     */
+    private static final Object NULL = new Object();
+    private static final Object[] EMPTY_VALUES = new Object[0];
+
     private final Object lock;
-    private final HashMap<String, Object> map;
+
+    /**
+     * The map of arguments having no {@link Key} and the array of values
+     * of arguments indexed by slots of their keys. If {@link #shared} is
+     * {@code true} they may be referenced by other packs and must be copied
+     * before any modification, so copying of packs is deferred until
+     * the first write.
+     */
+    private HashMap<String, Object> map;
+    private Object[] values;
+    private int valueCount;
+    private boolean shared;
+
+    /**
+     * The number of iterators which are still iterating over the current
+     * map and array. They must be copied before any modification too.
+     * The version is changed each time the map and the array are replaced,
+     * so an iterator knows whether it still uses them.
+     */
+    private int snapshotCount;
+    private int storageVersion;
 
     /**
      * Constructs a new empty pack.
@@ -64,29 +347,45 @@ public final class Pack implements Cloneable, Iterable<String> {
     public Pack(Object lock) {
         this.lock = lock;
         this.map = new HashMap<String, Object>();
+        this.values = EMPTY_VALUES;
+        this.valueCount = 0;
+        this.shared = false;
+        this.snapshotCount = 0;
+        this.storageVersion = 0;
     }
 
     /**
      * Constructs a new packs containing the arguments from
      * the specified one.
+     * <p/>
+     * The arguments aren't copied until one of the packs is modified.
      *
      * @param pack the pack of arguments to add.
      */
     public Pack(Pack pack) {
-        this(pack.lock());
-        putAll(pack);
+        this(pack.lock(), pack);
     }
 
     /**
      * Constructs a new packs containing the arguments from
      * the specified one.
+     * <p/>
+     * The arguments aren't copied until one of the packs is modified.
      *
      * @param lock synchronization object.
      * @param pack the pack of arguments to add.
      */
     public Pack(Object lock, Pack pack) {
-        this(lock);
-        putAll(pack);
+        this.lock = lock;
+        synchronized (pack.lock()) {
+            pack.shared = true;
+            this.map = pack.map;
+            this.values = pack.values;
+            this.valueCount = pack.valueCount;
+        }
+        this.shared = true;
+        this.snapshotCount = 0;
+        this.storageVersion = 0;
     }
 
     /**
@@ -98,6 +397,187 @@ public final class Pack implements Cloneable, Iterable<String> {
         return lock;
     }
 
+    /**
+     * Copies the arguments if they are shared with other packs or with
+     * live iterators, so they can be modified.
+     * Should be called under the lock of this pack.
+     */
+    private void unshare() {
+        if (shared || snapshotCount != 0) {
+            map = new HashMap<String, Object>(map);
+            values = values.clone();
+            replaceStorage();
+
+            // cells are mutable so they must be copied too,
+            // iterators use only the keys so they don't need them
+            if (shared) {
+                for (Map.Entry<String, Object> entry : map.entrySet()) {
+                    if (entry.getValue() instanceof Cell) {
+                        entry.setValue(((Cell) entry.getValue()).copy());
+                    }
+                }
+                for (int slot = 0; slot < values.length; slot++) {
+                    if (values[slot] instanceof Cell) {
+                        values[slot] = ((Cell) values[slot]).copy();
+                    }
+                }
+            }
+            shared = false;
+        }
+    }
+
+    /**
+     * Detaches live iterators after the map and the array are replaced.
+     * Should be called under the lock of this pack.
+     */
+    private void replaceStorage() {
+        snapshotCount = 0;
+        storageVersion++;
+    }
+
+    /**
+     * Converts a stored value to the value of an argument.
+     */
+    private static Object unwrap(Object value) {
+        if (value == NULL) {
+            return null;
+        } else if (value instanceof Cell) {
+            return ((Cell) value).box();
+        } else {
+            return value;
+        }
+    }
+
+    /**
+     * Returns the slot of the string key if it holds a value. The registry
+     * of keys is consulted only if this pack has values in slots.
+     * Should be called under the lock of this pack.
+     *
+     * @return the slot index or {@code -1} if there is no value in a slot.
+     */
+    private int findSlot(String key) {
+        if (valueCount != 0) {
+            Key<?> typedKey = Key.find(key);
+            if (typedKey != null) {
+                int slot = typedKey.slot();
+                if (slot < values.length && values[slot] != null) {
+                    return slot;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the stored value of the argument corresponding to
+     * the specified string key. Should be called under the lock of this pack.
+     */
+    private Object getValue(String key) {
+        // the own map is looked up first so the key is usually hashed once
+        Object value = map.get(key);
+        if (value == null) {
+            int slot = findSlot(key);
+            if (slot != -1) {
+                return values[slot];
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Returns the stored value of the argument corresponding to
+     * the specified string key which can be modified in place.
+     * Should be called under the lock of this pack.
+     */
+    private Object getMutableValue(String key) {
+        unshare();
+        return getValue(key);
+    }
+
+    /**
+     * Returns the value stored in the slot of the key or {@code null}
+     * if there is no value. Should be called under the lock of this pack.
+     */
+    private Object getValue(Key<?> key) {
+        int slot = key.slot();
+        if (slot < values.length && values[slot] != null) {
+            return values[slot];
+        }
+        // the argument could be put before the key was created
+        if (!map.isEmpty() && map.containsKey(key.name())) {
+            Object value = map.get(key.name());
+            return value != null ? value : NULL;
+        }
+        return null;
+    }
+
+    /**
+     * Stores the value in the slot of the key.
+     * Should be called under the lock of this pack.
+     */
+    private void putValue(Key<?> key, Object value) {
+        unshare();
+        int slot = key.slot();
+        if (slot >= values.length) {
+            Object[] newValues = new Object[Math.max(slot + 1, values.length * 2)];
+            System.arraycopy(values, 0, newValues, 0, values.length);
+            values = newValues;
+        }
+        if (values[slot] == null) {
+            valueCount++;
+        }
+        values[slot] = value != null ? value : NULL;
+        if (!map.isEmpty()) {
+            map.remove(key.name());
+        }
+    }
+
+    /**
+     * Removes the value from the slot of the key.
+     * Should be called under the lock of this pack.
+     */
+    private void removeValue(Key<?> key) {
+        int slot = key.slot();
+        boolean hasValue = slot < values.length && values[slot] != null;
+        if (hasValue || map.containsKey(key.name())) {
+            unshare();
+            if (hasValue) {
+                values[slot] = null;
+                valueCount--;
+            }
+            map.remove(key.name());
+        }
+    }
+
+    /**
+     * Copies a stored value to store it into another pack.
+     */
+    private static Object copyValue(Object value) {
+        if (value == NULL) {
+            return null;
+        } else if (value instanceof Cell) {
+            return ((Cell) value).copy();
+        } else {
+            return value;
+        }
+    }
+
+    /**
+     * Stores the value of the argument corresponding to the specified
+     * string key. Should be called under the lock of this pack.
+     */
+    private void putValue(String key, Object value) {
+        unshare();
+        if (map.put(key, value) == null) {
+            // the argument could be stored in the slot of its key
+            int slot = findSlot(key);
+            if (slot != -1) {
+                map.remove(key);
+                values[slot] = value != null ? value : NULL;
+            }
+        }
+    }
+
     @Override
     public Pack clone() {
         return new Pack(this);
@@ -110,7 +590,7 @@ public final class Pack implements Cloneable, Iterable<String> {
      */
     public int size() {
         synchronized (lock()) {
-            return map.size();
+            return map.size() + valueCount;
         }
     }
 
@@ -122,53 +602,91 @@ public final class Pack implements Cloneable, Iterable<String> {
      */
     public boolean isEmpty() {
         synchronized (lock()) {
-            return map.isEmpty();
+            return map.isEmpty() && valueCount == 0;
         }
     }
 
     /**
      * Returns an iterator over a set of keys of arguments contained in
      * this pack. The iterator supports removing.
+     * <p/>
+     * The iterator walks over a snapshot of the arguments taken when it
+     * was created, so it doesn't lock the pack and doesn't see further
+     * modifications. Taking the snapshot doesn't copy anything: the pack
+     * copies its arguments before the next modification instead.
      *
      * @return an iterator.
      */
     @Override
     public Iterator<String> iterator() {
+        final Iterator<String> mapIterator;
+        final Object[] snapshotValues;
+        final int snapshotVersion;
         synchronized (lock()) {
-            // copy key set and create delegate iterator
-            HashSet<String> copyKeySet = new HashSet<String>(map.keySet());
-            final Iterator<String> delegate = copyKeySet.iterator();
-
-            // return a thread-safe iterator
-            return new Iterator<String>() {
-                private final Object iteratorLock = new Object();
-                private String currentKey = null;
-
-                @Override
-                public boolean hasNext() {
-                    synchronized (iteratorLock) {
-                        return delegate.hasNext();
+            snapshotCount++;
+            snapshotVersion = storageVersion;
+            mapIterator = map.keySet().iterator();
+            snapshotValues = values;
+        }
+
+        return new Iterator<String>() {
+            private int nextSlot = findSlot(0);
+            private String currentKey = null;
+            private boolean finished = false;
+
+            /**
+             * Stops protecting the snapshot when the iteration is over,
+             * so the next write doesn't copy the arguments.
+             */
+            private void finish() {
+                if (!finished) {
+                    finished = true;
+                    synchronized (lock()) {
+                        if (storageVersion == snapshotVersion) {
+                            snapshotCount--;
+                        }
                     }
                 }
+            }
 
-                @Override
-                public String next() {
-                    synchronized (iteratorLock) {
-                        return currentKey = delegate.next();
-                    }
+            private int findSlot(int slot) {
+                while (slot < snapshotValues.length && snapshotValues[slot] == null) {
+                    slot++;
                 }
+                return slot;
+            }
 
-                @Override
-                public void remove() {
-                    synchronized (iteratorLock) {
-                        // implicitly check position of cursor
-                        delegate.remove();
-                        // so currentKey is valid
-                        Pack.this.remove(currentKey);
-                    }
+            @Override
+            public boolean hasNext() {
+                if (mapIterator.hasNext() || nextSlot < snapshotValues.length) {
+                    return true;
                 }
-            };
-        }
+                finish();
+                return false;
+            }
+
+            @Override
+            public String next() {
+                if (mapIterator.hasNext()) {
+                    return currentKey = mapIterator.next();
+                }
+                if (nextSlot >= snapshotValues.length) {
+                    throw new NoSuchElementException();
+                }
+                currentKey = Key.get(nextSlot).name();
+                nextSlot = findSlot(nextSlot + 1);
+                return currentKey;
+            }
+
+            @Override
+            public void remove() {
+                if (currentKey == null) {
+                    throw new IllegalStateException();
+                }
+                Pack.this.remove(currentKey);
+                currentKey = null;
+            }
+        };
     }
 
     /**
@@ -201,7 +719,21 @@ public final class Pack implements Cloneable, Iterable<String> {
      */
     public boolean containsKey(String key) {
         synchronized (lock()) {
-            return map.containsKey(key);
+            return map.containsKey(key) || findSlot(key) != -1;
+        }
+    }
+
+    /**
+     * Returns whether this pack contains an argument corresponding
+     * to the specified key.
+     *
+     * @param key the key.
+     * @return {@code true} if this pack contains the argument corresponding to
+     * the specified key otherwise {@code false}.
+     */
+    public boolean containsKey(Key<?> key) {
+        synchronized (lock()) {
+            return getValue(key) != null;
         }
     }
 
@@ -217,7 +749,7 @@ public final class Pack implements Cloneable, Iterable<String> {
     @SuppressWarnings("unchecked")
     public <T> T get(String key) {
         synchronized (lock()) {
-            return (T) map.get(key);
+            return (T) unwrap(getValue(key));
         }
     }
 
@@ -231,14 +763,42 @@ public final class Pack implements Cloneable, Iterable<String> {
      * corresponding to this key was found.
      * @see #get(String)
      */
-    @SuppressWarnings("unchecked")
     public <T> T get(String key, T defaultValue) {
+        T value = get(key);
+        return value != null ? value : defaultValue;
+    }
+
+    /**
+     * Returns the value of an argument corresponding to the specified key.
+     *
+     * @param key the key.
+     * @param <T> the type of the value.
+     * @return the value of the argument or {@code null} if no value
+     * corresponding to this key was found.
+     * @see #get(Key, Object)
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(Key<T> key) {
         synchronized (lock()) {
-            T value = (T) map.get(key);
-            return value != null ? value : defaultValue;
+            return (T) unwrap(getValue(key));
         }
     }
 
+    /**
+     * Returns the value of an argument corresponding to the specified key.
+     *
+     * @param key          the key.
+     * @param defaultValue the default value.
+     * @param <T>          the type of the value.
+     * @return the value of the argument or provided default if no value
+     * corresponding to this key was found.
+     * @see #get(Key)
+     */
+    public <T> T get(Key<T> key, T defaultValue) {
+        T value = get(key);
+        return value != null ? value : defaultValue;
+    }
+
     /**
      * Clears the pack. Removes all arguments and leaves pack empty.
      *
@@ -248,7 +808,11 @@ public final class Pack implements Cloneable, Iterable<String> {
      */
     public Pack clear() {
         synchronized (lock()) {
-            map.clear();
+            map = new HashMap<String, Object>();
+            values = EMPTY_VALUES;
+            valueCount = 0;
+            shared = false;
+            replaceStorage();
             return this;
         }
     }
@@ -261,7 +825,30 @@ public final class Pack implements Cloneable, Iterable<String> {
      */
     public Pack remove(String key) {
         synchronized (lock()) {
-            map.remove(key);
+            if (map.containsKey(key)) {
+                unshare();
+                map.remove(key);
+            } else {
+                int slot = findSlot(key);
+                if (slot != -1) {
+                    unshare();
+                    values[slot] = null;
+                    valueCount--;
+                }
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Removes an argument corresponding the specified key.
+     *
+     * @param key the key.
+     * @return this pack object.
+     */
+    public Pack remove(Key<?> key) {
+        synchronized (lock()) {
+            removeValue(key);
             return this;
         }
     }
@@ -280,7 +867,23 @@ public final class Pack implements Cloneable, Iterable<String> {
      */
     public <T> Pack put(String key, T value) {
         synchronized (lock()) {
-            map.put(key, value);
+            putValue(key, value);
+            return this;
+        }
+    }
+
+    /**
+     * Updates an argument corresponding to the specified key and sets its value to the specified one.
+     *
+     * @param key   the key.
+     * @param value the value.
+     * @param <T>   the type of the value.
+     * @return this pack object.
+     * @see #put(String, Object)
+     */
+    public <T> Pack put(Key<T> key, T value) {
+        synchronized (lock()) {
+            putValue(key, value);
             return this;
         }
     }
@@ -301,9 +904,9 @@ public final class Pack implements Cloneable, Iterable<String> {
     public <T> Pack put(String key, T value, T defaultValue) {
         synchronized (lock()) {
             if (value != null) {
-                map.put(key, value);
+                putValue(key, value);
             } else {
-                map.put(key, defaultValue);
+                putValue(key, defaultValue);
             }
             return this;
         }
@@ -325,7 +928,7 @@ public final class Pack implements Cloneable, Iterable<String> {
     public <T> Pack putIf(boolean condition, String key, T value) {
         synchronized (lock()) {
             if (condition) {
-                map.put(key, value);
+                putValue(key, value);
             }
             return this;
         }
@@ -343,10 +946,206 @@ public final class Pack implements Cloneable, Iterable<String> {
     public Pack putAll(Pack pack) {
         synchronized (lock()) {
             synchronized (pack.lock()) {
-                map.putAll(pack.map);
+                if (isEmpty() && pack != this) {
+                    // share arguments instead of copying them
+                    pack.shared = true;
+                    map = pack.map;
+                    values = pack.values;
+                    valueCount = pack.valueCount;
+                    shared = true;
+                    replaceStorage();
+                } else if (pack != this) {
+                    for (Map.Entry<String, Object> entry : pack.map.entrySet()) {
+                        putValue(entry.getKey(), copyValue(entry.getValue()));
+                    }
+                    for (int slot = 0; slot < pack.values.length; slot++) {
+                        if (pack.values[slot] != null) {
+                            putValue(Key.get(slot), copyValue(pack.values[slot]));
+                        }
+                    }
+                }
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Returns the value of an argument corresponding to the specified key
+     * as an {@code int}.
+     *
+     * @param key          the key.
+     * @param defaultValue the default value.
+     * @return the value of the argument or provided default if no numeric
+     * value corresponding to this key was found.
+     * @see #putInt(String, int)
+     */
+    public int getInt(String key, int defaultValue) {
+        synchronized (lock()) {
+            Object value = getValue(key);
+            return value instanceof Number ? ((Number) value).intValue() : defaultValue;
+        }
+    }
+
+    /**
+     * Updates an argument corresponding to the specified key and sets its
+     * value to the specified {@code int} one without boxing.
+     *
+     * @param key   the key.
+     * @param value the value.
+     * @return this pack object.
+     * @see #getInt(String, int)
+     */
+    public Pack putInt(String key, int value) {
+        synchronized (lock()) {
+            Object cell = getMutableValue(key);
+            if (cell instanceof IntCell) {
+                ((IntCell) cell).value = value;
+            } else {
+                putValue(key, new IntCell(value));
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Atomically increments an {@code int} argument corresponding to
+     * the specified key. An absent argument is treated as {@code 0}.
+     *
+     * @param key the key.
+     * @return the incremented value.
+     */
+    public int incrementInt(String key) {
+        synchronized (lock()) {
+            int value = getInt(key, 0) + 1;
+            putInt(key, value);
+            return value;
+        }
+    }
+
+    /**
+     * Returns the value of an argument corresponding to the specified key
+     * as a {@code long}.
+     *
+     * @param key          the key.
+     * @param defaultValue the default value.
+     * @return the value of the argument or provided default if no numeric
+     * value corresponding to this key was found.
+     * @see #putLong(String, long)
+     */
+    public long getLong(String key, long defaultValue) {
+        synchronized (lock()) {
+            Object value = getValue(key);
+            return value instanceof Number ? ((Number) value).longValue() : defaultValue;
+        }
+    }
+
+    /**
+     * Updates an argument corresponding to the specified key and sets its
+     * value to the specified {@code long} one without boxing.
+     *
+     * @param key   the key.
+     * @param value the value.
+     * @return this pack object.
+     * @see #getLong(String, long)
+     */
+    public Pack putLong(String key, long value) {
+        synchronized (lock()) {
+            Object cell = getMutableValue(key);
+            if (cell instanceof LongCell) {
+                ((LongCell) cell).value = value;
+            } else {
+                putValue(key, new LongCell(value));
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Atomically adds the delta to a {@code long} argument corresponding to
+     * the specified key. An absent argument is treated as {@code 0}.
+     *
+     * @param key   the key.
+     * @param delta the delta.
+     * @return the updated value.
+     */
+    public long addLong(String key, long delta) {
+        synchronized (lock()) {
+            long value = getLong(key, 0) + delta;
+            putLong(key, value);
+            return value;
+        }
+    }
+
+    /**
+     * Returns the value of an argument corresponding to the specified key
+     * as a {@code double}.
+     *
+     * @param key          the key.
+     * @param defaultValue the default value.
+     * @return the value of the argument or provided default if no numeric
+     * value corresponding to this key was found.
+     * @see #putDouble(String, double)
+     */
+    public double getDouble(String key, double defaultValue) {
+        synchronized (lock()) {
+            Object value = getValue(key);
+            return value instanceof Number ? ((Number) value).doubleValue() : defaultValue;
+        }
+    }
+
+    /**
+     * Updates an argument corresponding to the specified key and sets its
+     * value to the specified {@code double} one without boxing.
+     *
+     * @param key   the key.
+     * @param value the value.
+     * @return this pack object.
+     * @see #getDouble(String, double)
+     */
+    public Pack putDouble(String key, double value) {
+        synchronized (lock()) {
+            Object cell = getMutableValue(key);
+            if (cell instanceof DoubleCell) {
+                ((DoubleCell) cell).value = value;
+            } else {
+                putValue(key, new DoubleCell(value));
             }
             return this;
         }
     }
 
+    /**
+     * Returns the value of an argument corresponding to the specified key
+     * as a {@code boolean}.
+     *
+     * @param key          the key.
+     * @param defaultValue the default value.
+     * @return the value of the argument or provided default if no boolean
+     * value corresponding to this key was found.
+     * @see #putBoolean(String, boolean)
+     */
+    public boolean getBoolean(String key, boolean defaultValue) {
+        synchronized (lock()) {
+            Object value = getValue(key);
+            return value instanceof Boolean ? (Boolean) value : defaultValue;
+        }
+    }
+
+    /**
+     * Updates an argument corresponding to the specified key and sets its
+     * value to the specified {@code boolean} one. Boolean values are
+     * canonical, so no objects are allocated.
+     *
+     * @param key   the key.
+     * @param value the value.
+     * @return this pack object.
+     * @see #getBoolean(String, boolean)
+     */
+    public Pack putBoolean(String key, boolean value) {
+        synchronized (lock()) {
+            putValue(key, Boolean.valueOf(value));
+            return this;
+        }
+    }
+
 }
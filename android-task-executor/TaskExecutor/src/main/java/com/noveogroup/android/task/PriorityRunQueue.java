@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2014 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.noveogroup.android.task;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link PriorityRunQueue} is a run queue standing in front of working
+ * threads of an {@link Executor}. Each submitted runnable is put into
+ * the queue and a token is passed to the executor. When a working thread
+ * runs a token it takes the most urgent runnable from the queue.
+ * <p/>
+ * Runnables are ordered by priority with aging: waiting in the queue
+ * during the aging interval is equivalent to one level of priority. So
+ * a runnable with low priority can't be postponed forever by a flow of
+ * runnables with higher priority. Runnables having equal priority are
+ * run in FIFO order.
+ */
+class PriorityRunQueue {
+
+    private static class Entry implements Comparable<Entry> {
+
+        private final Runnable runnable;
+        private final long key;
+        private final long sequence;
+
+        private Entry(Runnable runnable, long key, long sequence) {
+            this.runnable = runnable;
+            this.key = key;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Entry entry) {
+            if (key != entry.key) {
+                return key < entry.key ? -1 : 1;
+            }
+            return sequence < entry.sequence ? -1 : sequence == entry.sequence ? 0 : 1;
+        }
+
+    }
+
+    private final Executor executor;
+    private final PriorityQueue<Entry> queue = new PriorityQueue<Entry>();
+    private long sequence = 0;
+    private volatile long agingInterval;
+
+    private final Runnable token = new Runnable() {
+        @Override
+        public void run() {
+            Entry entry;
+            synchronized (queue) {
+                entry = queue.poll();
+            }
+            if (entry != null) {
+                entry.runnable.run();
+            }
+        }
+    };
+
+    /**
+     * Creates new instance of {@link PriorityRunQueue}.
+     *
+     * @param executor      {@link Executor} providing working threads.
+     * @param agingInterval the aging interval in milliseconds.
+     */
+    public PriorityRunQueue(Executor executor, long agingInterval) {
+        this.executor = executor;
+        setAgingInterval(agingInterval);
+    }
+
+    /**
+     * Returns the aging interval.
+     *
+     * @return the aging interval in milliseconds.
+     */
+    public long getAgingInterval() {
+        return TimeUnit.NANOSECONDS.toMillis(agingInterval);
+    }
+
+    /**
+     * Sets the aging interval. The interval is applied to runnables
+     * submitted after the call.
+     *
+     * @param agingInterval the aging interval in milliseconds.
+     */
+    public void setAgingInterval(long agingInterval) {
+        if (agingInterval <= 0) {
+            throw new IllegalArgumentException();
+        }
+        this.agingInterval = TimeUnit.MILLISECONDS.toNanos(agingInterval);
+    }
+
+    /**
+     * Submits a runnable to working threads.
+     *
+     * @param runnable the runnable.
+     * @param priority the priority of the runnable.
+     */
+    public void execute(Runnable runnable, int priority) {
+        // the earlier virtual time the more urgent runnable
+        long key = System.nanoTime() - priority * agingInterval;
+        Entry entry;
+        synchronized (queue) {
+            entry = new Entry(runnable, key, sequence++);
+            queue.add(entry);
+        }
+
+        try {
+            executor.execute(token);
+        } catch (RejectedExecutionException e) {
+            synchronized (queue) {
+                queue.remove(entry);
+            }
+            throw e;
+        }
+    }
+
+}
@@ -89,4 +89,13 @@ public class SimpleTaskEnvironment implements TaskEnvironment {
         }
     }
 
+    @Override
+    public Continuation defer() {
+        if (handler instanceof AbstractTaskHandler) {
+            return ((AbstractTaskHandler) handler).defer();
+        } else {
+            throw new UnsupportedOperationException();
+        }
+    }
+
 }
@@ -27,6 +27,8 @@
 package com.noveogroup.android.task;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 
 /**
@@ -36,22 +38,116 @@ import java.util.concurrent.ExecutorService;
  */
 public class SimpleTaskExecutor extends AbstractTaskExecutor {
 
-    private static Set<TaskHandler> getAssociated(Set<TaskHandler> queue,
-                                                  Collection<String> tags, Collection<TaskHandler.State> states) {
-        Set<TaskHandler> set = new HashSet<TaskHandler>();
-        for (TaskHandler taskHandler : queue) {
-            if (taskHandler.owner().tags().containsAll(tags) && states.contains(taskHandler.getState())) {
-                set.add(taskHandler);
-            }
-        }
-        return Collections.unmodifiableSet(set);
-    }
+    /**
+     * The maximum number of cached owner task sets of tags.
+     */
+    private static final int MAX_OWNER_CACHE_SIZE = 256;
+
+    private static final List<TaskHandler.State> ALL_STATES = Arrays.asList(TaskHandler.State.values());
 
     private final ExecutorService executorService;
-    private final Set<TaskHandler> queue = new HashSet<TaskHandler>();
+    private final TaskQueue queue = new TaskQueue();
+    private final PriorityRunQueue runQueue;
+    private final ConcurrencyLimiter limiter = new ConcurrencyLimiter() {
+        @Override
+        protected int getLimit(String tag) {
+            return getConcurrencyLimit(tag);
+        }
+
+        @Override
+        protected void dispatch(TaskHandler handler, Runnable runnable) {
+            SimpleTaskExecutor.this.dispatch(handler, runnable);
+        }
+    };
+    private volatile boolean singleHopDispatch = false;
+    private volatile TaskSet untaggedOwner = null;
+    private final ConcurrentHashMap<String, TaskSet> tagOwners = new ConcurrentHashMap<String, TaskSet>();
 
     public SimpleTaskExecutor(ExecutorService executorService) {
         this.executorService = executorService;
+        this.runQueue = new PriorityRunQueue(new Executor() {
+            @Override
+            public void execute(Runnable runnable) {
+                submit(runnable);
+            }
+        }, 100);
+    }
+
+    /**
+     * Returns whether tasks are dispatched to working threads in a single hop.
+     *
+     * @return {@code true} if single-hop dispatch mode is enabled.
+     * @see #setSingleHopDispatch(boolean)
+     */
+    public boolean isSingleHopDispatch() {
+        return singleHopDispatch;
+    }
+
+    /**
+     * Enables or disables single-hop dispatch mode.
+     * <p/>
+     * By default a task is submitted to working threads twice: the first
+     * submission calls {@link TaskListener#onCreate(TaskHandler)} and
+     * {@link TaskListener#onQueueInsert(TaskHandler)}, the second one runs
+     * the task. In single-hop mode both steps are done by one working thread
+     * within a single submission. The order of listener callbacks and
+     * the semantics of cancellation stay the same, but a task that has been
+     * prepared can't wait in the queue behind the other tasks any more.
+     * <p/>
+     * The mode affects only tasks executed after the call.
+     *
+     * @param singleHopDispatch {@code true} to enable single-hop dispatch mode.
+     */
+    public void setSingleHopDispatch(boolean singleHopDispatch) {
+        this.singleHopDispatch = singleHopDispatch;
+    }
+
+    /**
+     * Returns the aging interval of task priorities.
+     *
+     * @return the aging interval in milliseconds.
+     * @see #setAgingInterval(long)
+     */
+    public long getAgingInterval() {
+        return runQueue.getAgingInterval();
+    }
+
+    /**
+     * Sets the aging interval of task priorities. Waiting for the start
+     * during this interval raises the priority of a task by one, so tasks
+     * having low priority will be started eventually. The default interval
+     * is 100 milliseconds.
+     *
+     * @param agingInterval the aging interval in milliseconds.
+     * @see #setPriority(String, int)
+     */
+    public void setAgingInterval(long agingInterval) {
+        runQueue.setAgingInterval(agingInterval);
+    }
+
+    @Override
+    public void setConcurrencyLimit(String tag, int limit) {
+        super.setConcurrencyLimit(tag, limit);
+        limiter.update(tag);
+    }
+
+    private void dispatch(TaskHandler handler, Runnable runnable) {
+        if (hasPriorities()) {
+            runQueue.execute(runnable, getPriority(handler.owner().tags()));
+        } else {
+            submit(runnable);
+        }
+    }
+
+    /**
+     * Submits a runnable to working threads. All of the runnables processing
+     * tasks are passed through this method, so a subclass may override it
+     * to change the way they are submitted to the executor service.
+     *
+     * @param runnable the runnable.
+     */
+    protected void submit(Runnable runnable) {
+        executorService.execute(runnable);
     }
 
     /**
@@ -68,31 +164,112 @@ public class SimpleTaskExecutor extends AbstractTaskExecutor {
     }
 
     @Override
-    public TaskSet queue(Collection<String> tags, final Collection<TaskHandler.State> states) {
+    public TaskSet queue(Collection<String> tags, Collection<TaskHandler.State> states) {
+        return createTaskSet(tags, states, true);
+    }
+
+    /**
+     * Creates a task set selecting tasks from the queue.
+     *
+     * @param tags        the tags.
+     * @param states      the states.
+     * @param keepCounter if {@code true} the task set keeps the counter of
+     *                    its tags once it is created, otherwise the counter
+     *                    can be reclaimed between the calls.
+     * @return the task set.
+     */
+    private TaskSet createTaskSet(Collection<String> tags, Collection<TaskHandler.State> states, final boolean keepCounter) {
         synchronized (lock()) {
             return new AbstractTaskSet(this, tags, states) {
                 @Override
                 public Iterator<TaskHandler> iterator() {
                     synchronized (lock()) {
-                        return getAssociated(queue, tags(), states()).iterator();
+                        return queue.select(tags(), states()).iterator();
                     }
                 }
 
                 @Override
                 public void interrupt() {
                     synchronized (lock()) {
-                        for (TaskHandler handler : getAssociated(queue, tags(), states())) {
+                        for (TaskHandler handler : queue.select(tags(), states())) {
                             handler.interrupt();
                         }
                     }
                 }
+
+                // the queue keeps the counter while this task set uses it
+                private TaskQueue.Counter counter;
+
+                private TaskQueue.Counter counter() {
+                    synchronized (lock()) {
+                        if (!keepCounter) {
+                            return queue.counter(tags());
+                        }
+                        if (counter == null) {
+                            counter = queue.counter(tags());
+                        }
+                        return counter;
+                    }
+                }
+
+                @Override
+                public int size() {
+                    return counter().get(states());
+                }
+
+                @Override
+                public boolean isEmpty() {
+                    return size() == 0;
+                }
+
+                @Override
+                public boolean join(long timeout) throws InterruptedException {
+                    return counter().await(states(), timeout);
+                }
             };
         }
     }
 
-    @Override
-    public TaskHandler execute(Task task, Pack args, List<TaskListener> taskListeners, Collection<String> tags) {
-        return new AbstractTaskHandler(executorService, task, this, queue(tags), args, copyTaskListeners(taskListeners)) {
+    /**
+     * Returns an owner task set of tasks labeled by the specified tags.
+     * Task sets are immutable, so the owners of untagged tasks and of
+     * tasks having a single tag are cached and shared between the tasks.
+     * Cached owners don't keep the counters of their tags, so the counters
+     * can be reclaimed when nobody else uses them.
+     *
+     * @param tags the tags.
+     * @return the owner task set.
+     */
+    private TaskSet owner(Collection<String> tags) {
+        if (tags.isEmpty()) {
+            TaskSet owner = untaggedOwner;
+            if (owner == null) {
+                untaggedOwner = owner = createTaskSet(tags, ALL_STATES, false);
+            }
+            return owner;
+        }
+
+        if (tags.size() == 1) {
+            String tag = tags.iterator().next();
+            if (tag != null) {
+                TaskSet owner = tagOwners.get(tag);
+                if (owner == null) {
+                    owner = createTaskSet(tags, ALL_STATES, false);
+                    if (tagOwners.size() < MAX_OWNER_CACHE_SIZE) {
+                        tagOwners.put(tag, owner);
+                    }
+                }
+                return owner;
+            }
+        }
+
+        return queue(tags);
+    }
+
+    private AbstractTaskHandler createTaskHandler(Task task, TaskSet owner, Pack args,
+                                                  ListenerSet globalListeners, ListenerSet listeners,
+                                                  boolean singleHop, boolean create) {
+        return new AbstractTaskHandler(task, this, owner, args, globalListeners, listeners, singleHop, create) {
             @Override
             protected TaskEnvironment createTaskEnvironment() {
                 return SimpleTaskExecutor.this.createTaskEnvironment(this);
@@ -110,8 +287,67 @@ public class SimpleTaskExecutor extends AbstractTaskExecutor {
                 synchronized (lock()) {
                     queue.remove(this);
                 }
+                limiter.release(this);
+            }
+
+            @Override
+            protected void updateQueue() {
+                synchronized (lock()) {
+                    queue.update(this, getState());
+                }
+            }
+
+            @Override
+            protected void leaveThread() {
+                // permits cover only the time the task occupies a thread
+                limiter.release(this);
+            }
+
+            @Override
+            protected void dispatch(Runnable runnable) {
+                if (!hasConcurrencyLimits() || limiter.admit(this, runnable)) {
+                    SimpleTaskExecutor.this.dispatch(this, runnable);
+                }
             }
         };
     }
 
+    @Override
+    public TaskHandler execute(Task task, Pack args, List<TaskListener> taskListeners, Collection<String> tags) {
+        return createTaskHandler(task, owner(tags), args,
+                getListenerSet(), ListenerSet.of(taskListeners), singleHopDispatch, true);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The tasks share one owner task set and one snapshot of listeners,
+     * they are added to the queue under a single acquisition of the lock.
+     * They are dispatched in the same mode as the tasks executed one by one
+     * (see {@link #setSingleHopDispatch(boolean)}).
+     */
+    @Override
+    public TaskGroup executeAll(Collection<? extends Task> tasks, Pack args, List<TaskListener> taskListeners, Collection<String> tags) {
+        TaskSet owner = owner(tags);
+        ListenerSet globalListeners = getListenerSet();
+        ListenerSet listeners = ListenerSet.of(taskListeners);
+        boolean singleHop = singleHopDispatch;
+
+        List<AbstractTaskHandler> handlers = new ArrayList<AbstractTaskHandler>(tasks.size());
+        for (Task task : tasks) {
+            handlers.add(createTaskHandler(task, owner, args, globalListeners, listeners, singleHop, false));
+        }
+
+        synchronized (lock()) {
+            for (AbstractTaskHandler handler : handlers) {
+                queue.add(handler);
+            }
+        }
+        for (AbstractTaskHandler handler : handlers) {
+            handler.dispatchTask();
+        }
+
+        return new TaskGroup(owner, new ArrayList<TaskHandler>(handlers));
+    }
+
 }
@@ -69,8 +69,11 @@ public interface TaskEnvironment {
      * corresponding to this task environment.
      * <p/>
      * Access to this container can be synchronized using an object returning
-     * {@link Pack#lock()} which is the same object as the global lock object
-     * of task executor returning by {@link TaskExecutor#lock()}.
+     * {@link Pack#lock()}. Each task has its own copy of arguments with its
+     * own lock unless the arguments were created by
+     * {@link TaskExecutor#newPack()}: such a pack is shared between tasks
+     * and is synchronized using the global lock object of task executor
+     * returning by {@link TaskExecutor#lock()}.
      *
      * @return the container of arguments.
      * @see Pack
@@ -117,4 +120,27 @@ public interface TaskEnvironment {
      */
     public void checkInterrupted() throws InterruptedException;
 
+    /**
+     * Defers completion of the task. If the task returns normally from
+     * {@link Task#run(TaskEnvironment)} it stays {@link TaskHandler.State#STARTED}
+     * until the returned continuation is completed, but its working thread
+     * is released and can process other tasks. If the task throws
+     * an exception it fails right away and the continuation is ignored.
+     * <p/>
+     * The continuation is usually completed by listeners of other tasks,
+     * so a task can wait for them without blocking a working thread.
+     * An interrupt request doesn't complete a deferred task, the task should
+     * check {@link #isInterrupted()} before its completion.
+     * <p/>
+     * This method can be called only once and only from inside of
+     * {@link Task#run(TaskEnvironment)}.
+     *
+     * @return the continuation of the task.
+     * @throws IllegalStateException if the method is called outside of
+     *                               {@link Task#run(TaskEnvironment)} or
+     *                               completion is already deferred.
+     * @see Continuation
+     */
+    public Continuation defer();
+
 }
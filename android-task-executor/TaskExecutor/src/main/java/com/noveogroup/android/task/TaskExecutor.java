@@ -37,18 +37,43 @@ public interface TaskExecutor {
      * Any access to this {@link TaskExecutor} should be synchronized using
      * this object.
      * <p/>
-     * The same object should be returned from method {@link Pack#lock()} by
-     * all of collections of arguments associated with tasks belonging to
-     * this {@link TaskExecutor}.
+     * The same object is returned from method {@link Pack#lock()} by
+     * the packs created using {@link #newPack()} and by {@link #args()}.
      *
      * @return the synchronization object.
      */
     public Object lock();
 
+    /**
+     * Creates a new empty pack synchronized using the lock of this executor.
+     * <p/>
+     * Usually each task gets its own copy of arguments synchronized using
+     * its own lock, so accesses to arguments of different tasks don't
+     * contend. A pack created by this method is an explicit way to share
+     * arguments between tasks: it is passed to the tasks as is, without
+     * copying, and all of them see the same arguments.
+     *
+     * @return the new pack.
+     */
     public Pack newPack();
 
+    /**
+     * Creates a new pack containing the arguments from the specified one
+     * and synchronized using the lock of this executor.
+     *
+     * @param pack the pack of arguments to add.
+     * @return the new pack.
+     * @see #newPack()
+     */
     public Pack newPack(Pack pack);
 
+    /**
+     * Returns the pack of arguments shared by all of the tasks which are
+     * executed with it.
+     *
+     * @return the shared pack.
+     * @see #newPack()
+     */
     public Pack args();
 
     public TaskSet queue(String... tags);
@@ -65,6 +90,92 @@ public interface TaskExecutor {
 
     public void removeTaskListener(TaskListener... taskListeners);
 
+    /**
+     * Returns the metrics of tasks of this executor: counters of tasks and
+     * histograms of their latencies for each tag. The metrics are recorded
+     * without locking and listeners, but they are disabled by default.
+     *
+     * @return the metrics.
+     * @see TaskMetrics#setEnabled(boolean)
+     */
+    public TaskMetrics getMetrics();
+
+    /**
+     * Returns the timeout of tasks labeled by the specified tag.
+     *
+     * @param tag the tag.
+     * @return the timeout in milliseconds or {@code 0} if there is no timeout.
+     * @see #setTimeout(String, long)
+     */
+    public long getTimeout(String tag);
+
+    /**
+     * Sets the timeout of tasks labeled by the specified tag. If a task is
+     * still running when the timeout has elapsed since its start it will be
+     * interrupted just like {@link TaskHandler#interrupt()} was called.
+     * <p/>
+     * The timeout is applied to tasks started after the call.
+     *
+     * @param tag     the tag.
+     * @param timeout the timeout in milliseconds or {@code 0} to disable it.
+     * @see TaskHandler#setTimeout(long)
+     */
+    public void setTimeout(String tag, long timeout);
+
+    /**
+     * Returns the priority of tasks labeled by the specified tag.
+     *
+     * @param tag the tag.
+     * @return the priority or {@code 0} if it wasn't set.
+     * @see #setPriority(String, int)
+     */
+    public int getPriority(String tag);
+
+    /**
+     * Sets the priority of tasks labeled by the specified tag. The priority
+     * of a task is the highest one among the priorities of its tags.
+     * Tasks having higher priority will be started earlier than the others
+     * waiting in the queue.
+     * <p/>
+     * The priority is applied to tasks executed after the call.
+     *
+     * @param tag      the tag.
+     * @param priority the priority or {@code 0} to reset it.
+     */
+    public void setPriority(String tag, int priority);
+
+    /**
+     * Returns the maximum number of concurrently running tasks labeled by
+     * the specified tag.
+     *
+     * @param tag the tag.
+     * @return the limit or {@code 0} if there is no limit.
+     * @see #setConcurrencyLimit(String, int)
+     */
+    public int getConcurrencyLimit(String tag);
+
+    /**
+     * Sets the maximum number of concurrently running tasks labeled by
+     * the specified tag. A task is started only if the limits of all its
+     * tags allow it. Otherwise it stays {@link TaskHandler.State#CREATED}
+     * in the waiting queue of the tag and doesn't occupy a working thread
+     * until some running task labeled by the tag is finished.
+     * <p/>
+     * A task holds the permits of its tags only while it occupies a working
+     * thread, i.e. while it is inside {@link Task#run(TaskEnvironment)}.
+     * A task which has deferred its completion using
+     * {@link TaskEnvironment#defer()} releases them when it returns, so
+     * tasks it waits for can run even if they have the same tags. A task
+     * blocking its thread waiting for other tasks of the same tag still
+     * holds its permits and can deadlock.
+     * <p/>
+     * Canceling a waiting task removes it from the waiting queue.
+     *
+     * @param tag   the tag.
+     * @param limit the limit or {@code 0} to remove it.
+     */
+    public void setConcurrencyLimit(String tag, int limit);
+
     public TaskHandler execute(Task task, Pack args, List<TaskListener> taskListeners, Collection<String> tags);
 
     public TaskHandler execute(Task task, Pack args, List<TaskListener> taskListeners, String... tags);
@@ -79,6 +190,54 @@ public interface TaskExecutor {
 
     public TaskHandler execute(Task task, String... tags);
 
+    /**
+     * Executes a batch of tasks labeled by the same tags. It is equivalent
+     * to executing the tasks one by one, but an implementation may
+     * register the whole batch at once sharing the listeners and
+     * the owner task set between the tasks.
+     *
+     * @param tasks         the tasks.
+     * @param args          the arguments container, each task gets its own copy.
+     * @param taskListeners a list of additional listeners of each task.
+     * @param tags          the tags of the tasks.
+     * @return the group of the tasks.
+     */
+    public TaskGroup executeAll(Collection<? extends Task> tasks, Pack args, List<TaskListener> taskListeners, Collection<String> tags);
+
+    /**
+     * Executes a batch of tasks labeled by the same tags.
+     *
+     * @param tasks the tasks.
+     * @param tags  the tags of the tasks.
+     * @return the group of the tasks.
+     * @see #executeAll(Collection, Pack, List, Collection)
+     */
+    public TaskGroup executeAll(Collection<? extends Task> tasks, String... tags);
+
+    /**
+     * Executes the value task and returns a future of its result.
+     *
+     * @param task          the value task.
+     * @param args          the arguments container.
+     * @param taskListeners a list of additional listeners of the task.
+     * @param tags          the tags of the task.
+     * @param <V>           the type of the result.
+     * @return the future bound to the task.
+     * @see TaskFuture#handler()
+     */
+    public <V> TaskFuture<V> submit(ValueTask<V> task, Pack args, List<TaskListener> taskListeners, Collection<String> tags);
+
+    /**
+     * Executes the value task and returns a future of its result.
+     *
+     * @param task the value task.
+     * @param tags the tags of the task.
+     * @param <V>  the type of the result.
+     * @return the future bound to the task.
+     * @see TaskFuture#handler()
+     */
+    public <V> TaskFuture<V> submit(ValueTask<V> task, String... tags);
+
     public void shutdown();
 
     public boolean isShutdown();
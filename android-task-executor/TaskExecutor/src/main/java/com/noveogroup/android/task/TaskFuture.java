@@ -0,0 +1,340 @@
+/*
+ * Copyright (c) 2014 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.noveogroup.android.task;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * {@link TaskFuture} represents a result of {@link ValueTask}.
+ * <p/>
+ * Besides the blocking methods of {@link Future} it supports callbacks
+ * similar to {@code CompletionStage}: {@link #thenApply(Function)},
+ * {@link #thenAccept(Consumer)} and {@link #whenComplete(Callback)}.
+ * A callback is called by the thread completing the future, or by
+ * the calling thread if the future is already completed, so waiting for
+ * a result doesn't need a thread.
+ * <p/>
+ * A future of a task is completed when the task is destroyed: it gets
+ * the returned value if the task succeeded, the error if the task failed,
+ * and it is cancelled if the task was canceled.
+ *
+ * @param <V> the type of the result.
+ */
+public class TaskFuture<V> implements Future<V> {
+
+    /**
+     * A function transforming the result of a future.
+     *
+     * @param <T> the type of the argument.
+     * @param <R> the type of the result.
+     */
+    public interface Function<T, R> {
+
+        public R apply(T value) throws Throwable;
+
+    }
+
+    /**
+     * An action consuming the result of a future.
+     *
+     * @param <T> the type of the argument.
+     */
+    public interface Consumer<T> {
+
+        public void accept(T value) throws Throwable;
+
+    }
+
+    /**
+     * A callback receiving either the result or the error of a future.
+     *
+     * @param <T> the type of the result.
+     */
+    public interface Callback<T> {
+
+        /**
+         * Is called when the future is completed.
+         *
+         * @param value     the result or {@code null} if the future has failed.
+         * @param throwable the error or {@code null} if the future has succeeded.
+         * @throws Throwable the throwable object.
+         */
+        public void onComplete(T value, Throwable throwable) throws Throwable;
+
+    }
+
+    /**
+     * Binds the future to a task: runs the value task and completes
+     * the future when the task is destroyed.
+     */
+    private class Binding extends TaskListener.Default implements Task {
+
+        private final ValueTask<V> task;
+        private volatile V result;
+
+        private Binding(ValueTask<V> task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run(TaskEnvironment env) throws Throwable {
+            result = task.run(env);
+        }
+
+        @Override
+        public void onDestroy(TaskHandler handler) {
+            switch (handler.getState()) {
+                case SUCCEED:
+                    complete(result, null, false);
+                    break;
+                case FAILED:
+                    complete(null, handler.getThrowable(), false);
+                    break;
+                default:
+                    complete(null, new CancellationException(), true);
+                    break;
+            }
+        }
+
+    }
+
+    private final Object lock = new Object();
+    private final CountDownLatch latch = new CountDownLatch(1);
+    private List<Runnable> callbacks = new ArrayList<Runnable>(1);
+    private volatile TaskHandler handler = null;
+    private volatile boolean done = false;
+    private boolean cancelled = false;
+    private V value = null;
+    private Throwable throwable = null;
+
+    /**
+     * Creates a future which isn't bound to a task.
+     */
+    TaskFuture() {
+    }
+
+    /**
+     * Executes the value task using the specified executor and returns
+     * the future bound to it.
+     */
+    static <V> TaskFuture<V> submit(TaskExecutor executor, ValueTask<V> task, Pack args,
+                                    List<TaskListener> taskListeners, Collection<String> tags) {
+        TaskFuture<V> future = new TaskFuture<V>();
+        TaskFuture<V>.Binding binding = future.new Binding(task);
+
+        List<TaskListener> listeners = new ArrayList<TaskListener>(taskListeners.size() + 1);
+        listeners.add(binding);
+        listeners.addAll(taskListeners);
+        future.handler = executor.execute(binding, args, listeners, tags);
+        return future;
+    }
+
+    /**
+     * Returns the handler of the task this future is bound to.
+     *
+     * @return the task handler or {@code null} if the future was created
+     * by a callback method.
+     */
+    public TaskHandler handler() {
+        return handler;
+    }
+
+    private boolean complete(V value, Throwable throwable, boolean cancelled) {
+        List<Runnable> callbacks;
+        synchronized (lock) {
+            if (done) {
+                return false;
+            }
+            this.value = value;
+            this.throwable = throwable;
+            this.cancelled = cancelled;
+            this.done = true;
+            callbacks = this.callbacks;
+            this.callbacks = null;
+        }
+
+        latch.countDown();
+        for (Runnable callback : callbacks) {
+            callback.run();
+        }
+        return true;
+    }
+
+    private void addCallback(Runnable callback) {
+        synchronized (lock) {
+            if (!done) {
+                callbacks.add(callback);
+                return;
+            }
+        }
+        callback.run();
+    }
+
+    /**
+     * Cancels the future. If the future is bound to a task which isn't
+     * started yet the task is canceled. If the task is running it is
+     * interrupted only if {@code mayInterruptIfRunning} is {@code true}.
+     *
+     * @param mayInterruptIfRunning {@code true} if the running task should
+     *                              be interrupted.
+     * @return {@code false} if the future has already been completed.
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if (!complete(null, new CancellationException(), true)) {
+            return false;
+        }
+
+        TaskHandler handler = this.handler;
+        if (handler != null && (mayInterruptIfRunning || handler.getState() == TaskHandler.State.CREATED)) {
+            handler.interrupt();
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        synchronized (lock) {
+            return cancelled;
+        }
+    }
+
+    @Override
+    public boolean isDone() {
+        return done;
+    }
+
+    private V report() throws ExecutionException {
+        synchronized (lock) {
+            if (cancelled) {
+                throw (CancellationException) throwable;
+            }
+            if (throwable != null) {
+                throw new ExecutionException(throwable);
+            }
+            return value;
+        }
+    }
+
+    @Override
+    public V get() throws InterruptedException, ExecutionException {
+        latch.await();
+        return report();
+    }
+
+    @Override
+    public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (!latch.await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+        return report();
+    }
+
+    /**
+     * Returns a new future which is completed with the result of
+     * the function applied to the result of this future. If this future
+     * fails or the function throws an exception the new future fails too.
+     *
+     * @param function the function.
+     * @param <U>      the type of the new result.
+     * @return the new future.
+     */
+    public <U> TaskFuture<U> thenApply(final Function<? super V, ? extends U> function) {
+        final TaskFuture<U> future = new TaskFuture<U>();
+        addCallback(new Runnable() {
+            @Override
+            public void run() {
+                if (throwable != null) {
+                    future.complete(null, throwable, false);
+                } else {
+                    U result;
+                    try {
+                        result = function.apply(value);
+                    } catch (Throwable t) {
+                        future.complete(null, t, false);
+                        return;
+                    }
+                    future.complete(result, null, false);
+                }
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Returns a new future which is completed when the action consumes
+     * the result of this future. If this future fails or the action throws
+     * an exception the new future fails too.
+     *
+     * @param consumer the action.
+     * @return the new future.
+     */
+    public TaskFuture<Void> thenAccept(final Consumer<? super V> consumer) {
+        return thenApply(new Function<V, Void>() {
+            @Override
+            public Void apply(V value) throws Throwable {
+                consumer.accept(value);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Returns a new future which is completed with the same result as
+     * this future after the callback is called. If the callback throws
+     * an exception while this future succeeded the new future fails.
+     *
+     * @param callback the callback.
+     * @return the new future.
+     */
+    public TaskFuture<V> whenComplete(final Callback<? super V> callback) {
+        final TaskFuture<V> future = new TaskFuture<V>();
+        addCallback(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    callback.onComplete(value, throwable);
+                } catch (Throwable t) {
+                    future.complete(null, throwable != null ? throwable : t, false);
+                    return;
+                }
+                future.complete(value, throwable, false);
+            }
+        });
+        return future;
+    }
+
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2014 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.noveogroup.android.task;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * {@link TaskGroup} is a handle of tasks executed together by
+ * {@link TaskExecutor#executeAll(Collection, Pack, List, Collection)}.
+ * The tasks can be joined or interrupted as a unit.
+ */
+public class TaskGroup implements Iterable<TaskHandler> {
+
+    private final TaskSet owner;
+    private final List<TaskHandler> handlers;
+
+    /**
+     * Creates new instance of {@link TaskGroup}.
+     *
+     * @param owner    owner {@link TaskSet} of the tasks.
+     * @param handlers the handlers of the tasks.
+     */
+    public TaskGroup(TaskSet owner, List<TaskHandler> handlers) {
+        this.owner = owner;
+        this.handlers = Collections.unmodifiableList(handlers);
+    }
+
+    /**
+     * Returns a task set that owns the tasks of this group.
+     *
+     * @return owner {@link TaskSet}.
+     */
+    public TaskSet owner() {
+        return owner;
+    }
+
+    /**
+     * Returns an unmodifiable list of handlers of the tasks in order of
+     * their submission.
+     *
+     * @return the list of handlers.
+     */
+    public List<TaskHandler> handlers() {
+        return handlers;
+    }
+
+    public int size() {
+        return handlers.size();
+    }
+
+    @Override
+    public Iterator<TaskHandler> iterator() {
+        return handlers.iterator();
+    }
+
+    /**
+     * Interrupts all of the tasks of this group.
+     *
+     * @see TaskHandler#interrupt()
+     */
+    public void interrupt() {
+        synchronized (owner.lock()) {
+            for (TaskHandler handler : handlers) {
+                handler.interrupt();
+            }
+        }
+    }
+
+    /**
+     * Waits until all of the tasks of this group are destroyed.
+     *
+     * @throws InterruptedException if the current thread was interrupted.
+     */
+    public void join() throws InterruptedException {
+        join(0);
+    }
+
+    /**
+     * Waits until all of the tasks of this group are destroyed.
+     *
+     * @param timeout the maximum time to wait in milliseconds or
+     *                {@code 0} to wait forever.
+     * @return {@code false} if the timeout has elapsed.
+     * @throws InterruptedException if the current thread was interrupted.
+     */
+    public boolean join(long timeout) throws InterruptedException {
+        if (timeout < 0) {
+            throw new IllegalArgumentException();
+        }
+
+        long time = System.nanoTime();
+        for (TaskHandler handler : handlers) {
+            if (timeout == 0) {
+                handler.join();
+            } else {
+                long remaining = timeout - (System.nanoTime() - time) / 1000000;
+                if (remaining <= 0 || !handler.join(remaining)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+}
@@ -145,6 +145,92 @@ public interface TaskHandler {
 
     public void interrupt();
 
+    /**
+     * Returns the timeout of the task.
+     *
+     * @return the timeout in milliseconds or {@code 0} if there is no timeout.
+     * @see #setTimeout(long)
+     */
+    public long getTimeout();
+
+    /**
+     * Sets the timeout of the task. If the task is still running when
+     * the timeout has elapsed since its start it will be interrupted just like
+     * {@link #interrupt()} was called.
+     * <p/>
+     * The shortest one of the timeout of the task and the timeouts of its tags
+     * is used (see {@link TaskExecutor#setTimeout(String, long)}).
+     *
+     * @param timeout the timeout in milliseconds or {@code 0} to disable it.
+     */
+    public void setTimeout(long timeout);
+
+    /**
+     * Returns the time when the task was created.
+     *
+     * @return the value of {@link System#nanoTime()} at that moment.
+     */
+    public long getCreateTime();
+
+    /**
+     * Returns the time when the task was inserted into the queue, i.e.
+     * when {@link TaskListener#onQueueInsert(TaskHandler)} was fired.
+     *
+     * @return the value of {@link System#nanoTime()} at that moment or
+     * {@code 0} if it hasn't happened.
+     */
+    public long getQueueInsertTime();
+
+    /**
+     * Returns the time when the task was started.
+     *
+     * @return the value of {@link System#nanoTime()} at that moment or
+     * {@code 0} if it hasn't happened.
+     */
+    public long getStartTime();
+
+    /**
+     * Returns the time when the task was finished.
+     *
+     * @return the value of {@link System#nanoTime()} at that moment or
+     * {@code 0} if it hasn't happened.
+     */
+    public long getFinishTime();
+
+    /**
+     * Returns the time when the task was destroyed and all of its listeners
+     * were called.
+     *
+     * @return the value of {@link System#nanoTime()} at that moment or
+     * {@code 0} if it hasn't happened.
+     */
+    public long getDestroyTime();
+
+    /**
+     * Returns the time the task has been waiting for the start in the queue
+     * of the executor since its creation.
+     *
+     * @return the duration in nanoseconds or {@code 0} if the task hasn't
+     * been started.
+     */
+    public long getQueueWaitTime();
+
+    /**
+     * Returns the time the task has been running from the start to
+     * the finish, including deferred completion.
+     *
+     * @return the duration in nanoseconds or {@code 0} if the task hasn't
+     * been finished.
+     */
+    public long getRunTime();
+
+    /**
+     * Returns the total time spent in callbacks of the listeners of the task.
+     *
+     * @return the duration in nanoseconds.
+     */
+    public long getListenerTime();
+
     public void join() throws InterruptedException;
 
     public boolean join(long timeout) throws InterruptedException;
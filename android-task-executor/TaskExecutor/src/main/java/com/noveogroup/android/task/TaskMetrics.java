@@ -0,0 +1,471 @@
+/*
+ * Copyright (c) 2014 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.noveogroup.android.task;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * {@link TaskMetrics} keeps counters of tasks and histograms of their
+ * latencies for each tag and for all of the tasks of an executor.
+ * <p/>
+ * Recording is lock-free: it uses atomic variables only, so it doesn't
+ * contend with the executor and needs no listeners. The metrics are
+ * read as immutable snapshots and can be reset to collect them per
+ * interval.
+ * <p/>
+ * Metrics are disabled by default. Only tasks executed after they are
+ * enabled are recorded.
+ *
+ * @see TaskExecutor#getMetrics()
+ */
+public final class TaskMetrics {
+
+    /**
+     * A histogram of durations. Values are counted in buckets whose width
+     * is 1/8 of the power of two below them, so a percentile is precise
+     * within 12.5%.
+     */
+    public static final class Histogram {
+
+        private static final int SUB_BITS = 3;
+        private static final int SUB_COUNT = 1 << SUB_BITS;
+        private static final int BUCKET_COUNT = (64 - SUB_BITS) << SUB_BITS;
+
+        private static int index(long value) {
+            if (value < SUB_COUNT) {
+                return (int) Math.max(value, 0);
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            return ((exponent - SUB_BITS + 1) << SUB_BITS) + (int) ((value >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1));
+        }
+
+        private static long lowestValue(int index) {
+            if (index < SUB_COUNT) {
+                return index;
+            }
+            int exponent = (index >>> SUB_BITS) + SUB_BITS - 1;
+            return (long) (SUB_COUNT + (index & (SUB_COUNT - 1))) << (exponent - SUB_BITS);
+        }
+
+        private final long[] buckets;
+        private final long count;
+        private final long total;
+        private final long max;
+
+        private Histogram(long[] buckets, long total, long max) {
+            long count = 0;
+            for (long bucket : buckets) {
+                count += bucket;
+            }
+            this.buckets = buckets;
+            this.count = count;
+            this.total = total;
+            this.max = max;
+        }
+
+        /**
+         * Returns the number of recorded values.
+         *
+         * @return the number of values.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Returns the sum of recorded values.
+         *
+         * @return the sum in nanoseconds.
+         */
+        public long getTotal() {
+            return total;
+        }
+
+        /**
+         * Returns the maximum recorded value.
+         *
+         * @return the maximum in nanoseconds or {@code 0} if there are no values.
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * Returns the mean of recorded values.
+         *
+         * @return the mean in nanoseconds or {@code 0} if there are no values.
+         */
+        public double getMean() {
+            return count != 0 ? (double) total / count : 0;
+        }
+
+        /**
+         * Returns the value below which the specified percentage of recorded
+         * values falls.
+         *
+         * @param percentile the percentile from {@code 0} to {@code 100}.
+         * @return the upper bound of the bucket containing the percentile
+         * in nanoseconds or {@code 0} if there are no values.
+         */
+        public long getPercentile(double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException();
+            }
+
+            long rank = (long) Math.ceil(count * percentile / 100);
+            long sum = 0;
+            for (int index = 0; index < buckets.length; index++) {
+                sum += buckets[index];
+                if (sum >= rank && sum > 0) {
+                    return index + 1 < buckets.length ? Math.min(lowestValue(index + 1) - 1, max) : max;
+                }
+            }
+            return 0;
+        }
+
+    }
+
+    /**
+     * An immutable snapshot of the metrics of a set of tasks.
+     */
+    public static final class Snapshot {
+
+        private final long submitted;
+        private final long started;
+        private final long succeeded;
+        private final long failed;
+        private final long canceled;
+        private final Histogram queueWaitTime;
+        private final Histogram runTime;
+
+        private Snapshot(long submitted, long started, long succeeded, long failed, long canceled,
+                         Histogram queueWaitTime, Histogram runTime) {
+            this.submitted = submitted;
+            this.started = started;
+            this.succeeded = succeeded;
+            this.failed = failed;
+            this.canceled = canceled;
+            this.queueWaitTime = queueWaitTime;
+            this.runTime = runTime;
+        }
+
+        /**
+         * Returns the number of executed tasks.
+         *
+         * @return the number of tasks.
+         */
+        public long getSubmitted() {
+            return submitted;
+        }
+
+        /**
+         * Returns the number of started tasks.
+         *
+         * @return the number of tasks.
+         */
+        public long getStarted() {
+            return started;
+        }
+
+        /**
+         * Returns the number of tasks which have succeeded.
+         *
+         * @return the number of tasks.
+         */
+        public long getSucceeded() {
+            return succeeded;
+        }
+
+        /**
+         * Returns the number of tasks which have failed.
+         *
+         * @return the number of tasks.
+         */
+        public long getFailed() {
+            return failed;
+        }
+
+        /**
+         * Returns the number of canceled tasks.
+         *
+         * @return the number of tasks.
+         */
+        public long getCanceled() {
+            return canceled;
+        }
+
+        /**
+         * Returns the histogram of times the tasks have been waiting for
+         * the start.
+         *
+         * @return the histogram.
+         * @see TaskHandler#getQueueWaitTime()
+         */
+        public Histogram getQueueWaitTime() {
+            return queueWaitTime;
+        }
+
+        /**
+         * Returns the histogram of times the tasks have been running.
+         *
+         * @return the histogram.
+         * @see TaskHandler#getRunTime()
+         */
+        public Histogram getRunTime() {
+            return runTime;
+        }
+
+    }
+
+    /**
+     * Records values of a histogram.
+     */
+    private static final class HistogramRecorder {
+
+        private final AtomicLongArray buckets = new AtomicLongArray(Histogram.BUCKET_COUNT);
+        private final AtomicLong total = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        public void record(long value) {
+            buckets.incrementAndGet(Histogram.index(value));
+            total.addAndGet(value);
+            while (true) {
+                long currentMax = max.get();
+                if (value <= currentMax || max.compareAndSet(currentMax, value)) {
+                    break;
+                }
+            }
+        }
+
+        public Histogram snapshot(boolean reset) {
+            long[] values = new long[buckets.length()];
+            for (int index = 0; index < values.length; index++) {
+                values[index] = reset ? buckets.getAndSet(index, 0) : buckets.get(index);
+            }
+            return reset
+                    ? new Histogram(values, total.getAndSet(0), max.getAndSet(0))
+                    : new Histogram(values, total.get(), max.get());
+        }
+
+    }
+
+    /**
+     * Records the metrics of a set of tasks.
+     */
+    private static final class Recorder {
+
+        private final AtomicLong submitted = new AtomicLong();
+        private final AtomicLong started = new AtomicLong();
+        private final AtomicLong succeeded = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong canceled = new AtomicLong();
+        private final HistogramRecorder queueWaitTime = new HistogramRecorder();
+        private final HistogramRecorder runTime = new HistogramRecorder();
+
+        public Snapshot snapshot(boolean reset) {
+            return reset
+                    ? new Snapshot(submitted.getAndSet(0), started.getAndSet(0),
+                    succeeded.getAndSet(0), failed.getAndSet(0), canceled.getAndSet(0),
+                    queueWaitTime.snapshot(true), runTime.snapshot(true))
+                    : new Snapshot(submitted.get(), started.get(),
+                    succeeded.get(), failed.get(), canceled.get(),
+                    queueWaitTime.snapshot(false), runTime.snapshot(false));
+        }
+
+    }
+
+    private volatile boolean enabled = false;
+    private final Recorder total = new Recorder();
+    private final ConcurrentHashMap<String, Recorder> recorders = new ConcurrentHashMap<String, Recorder>();
+
+    /**
+     * Returns whether the metrics are recorded.
+     *
+     * @return {@code true} if the metrics are enabled.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables recording of the metrics. The change affects only
+     * tasks executed after the call.
+     *
+     * @param enabled {@code true} to enable the metrics.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Returns the set of tags having the metrics.
+     *
+     * @return an unmodifiable copy of the set of tags.
+     */
+    public Set<String> getTags() {
+        return Collections.unmodifiableSet(new HashSet<String>(recorders.keySet()));
+    }
+
+    /**
+     * Returns a snapshot of the metrics of all of the tasks.
+     *
+     * @return the snapshot.
+     */
+    public Snapshot getTotal() {
+        return total.snapshot(false);
+    }
+
+    /**
+     * Returns a snapshot of the metrics of all of the tasks and optionally
+     * resets them. Resetting is atomic for each value, so a value recorded
+     * concurrently is counted in exactly one interval.
+     *
+     * @param reset {@code true} to reset the metrics.
+     * @return the snapshot.
+     */
+    public Snapshot getTotal(boolean reset) {
+        return total.snapshot(reset);
+    }
+
+    /**
+     * Returns a snapshot of the metrics of tasks labeled by the specified tag.
+     *
+     * @param tag the tag.
+     * @return the snapshot.
+     */
+    public Snapshot get(String tag) {
+        return get(tag, false);
+    }
+
+    /**
+     * Returns a snapshot of the metrics of tasks labeled by the specified tag
+     * and optionally resets them.
+     *
+     * @param tag   the tag.
+     * @param reset {@code true} to reset the metrics.
+     * @return the snapshot.
+     * @see #getTotal(boolean)
+     */
+    public Snapshot get(String tag, boolean reset) {
+        Recorder recorder = recorders.get(tag);
+        return (recorder != null ? recorder : new Recorder()).snapshot(reset);
+    }
+
+    /**
+     * Resets all of the metrics.
+     */
+    public void reset() {
+        total.snapshot(true);
+        for (Recorder recorder : recorders.values()) {
+            recorder.snapshot(true);
+        }
+    }
+
+    private Recorder recorder(String tag) {
+        Recorder recorder = recorders.get(tag);
+        if (recorder == null) {
+            Recorder newRecorder = new Recorder();
+            recorder = recorders.putIfAbsent(tag, newRecorder);
+            if (recorder == null) {
+                recorder = newRecorder;
+            }
+        }
+        return recorder;
+    }
+
+    /**
+     * Records execution of a task.
+     *
+     * @param tags the tags of the task.
+     */
+    void recordSubmitted(Collection<String> tags) {
+        total.submitted.incrementAndGet();
+        for (String tag : tags) {
+            if (tag != null) {
+                recorder(tag).submitted.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Records the start of a task.
+     *
+     * @param tags          the tags of the task.
+     * @param queueWaitTime the time the task has been waiting for the start.
+     */
+    void recordStarted(Collection<String> tags, long queueWaitTime) {
+        total.started.incrementAndGet();
+        total.queueWaitTime.record(queueWaitTime);
+        for (String tag : tags) {
+            if (tag != null) {
+                Recorder recorder = recorder(tag);
+                recorder.started.incrementAndGet();
+                recorder.queueWaitTime.record(queueWaitTime);
+            }
+        }
+    }
+
+    /**
+     * Records the destruction of a task.
+     *
+     * @param tags    the tags of the task.
+     * @param state   the final state of the task.
+     * @param runTime the time the task has been running.
+     */
+    void recordDestroyed(Collection<String> tags, TaskHandler.State state, long runTime) {
+        record(total, state, runTime);
+        for (String tag : tags) {
+            if (tag != null) {
+                record(recorder(tag), state, runTime);
+            }
+        }
+    }
+
+    private static void record(Recorder recorder, TaskHandler.State state, long runTime) {
+        switch (state) {
+            case SUCCEED:
+                recorder.succeeded.incrementAndGet();
+                recorder.runTime.record(runTime);
+                break;
+            case FAILED:
+                recorder.failed.incrementAndGet();
+                recorder.runTime.record(runTime);
+                break;
+            default:
+                recorder.canceled.incrementAndGet();
+                break;
+        }
+    }
+
+}
@@ -0,0 +1,350 @@
+/*
+ * Copyright (c) 2014 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.noveogroup.android.task;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link TaskQueue} keeps a set of task handlers and an inverted index
+ * of their tags. The index maps each tag onto a set of handlers labeled
+ * by it, so selection of tasks by tags takes time proportional to the size
+ * of the smallest set of handlers corresponding to one of the tags.
+ * <p/>
+ * The queue also maintains live counters of handlers per state for sets
+ * of tags. Counting takes constant time except the first time for
+ * the given set of tags. Each counter is indexed by one of its tags, so
+ * a change of the queue touches only the counters indexed by the tags of
+ * the handler. The counters are used to wait for completion of task sets
+ * too.
+ * <p/>
+ * The queue references the counters weakly: a counter is kept while some
+ * task set or waiting thread uses it and is dropped afterwards.
+ * <p/>
+ * The queue isn't thread-safe. All accesses to it should be synchronized
+ * using the global lock of the owner {@link TaskExecutor}.
+ */
+class TaskQueue {
+
+    private static final int STATE_COUNT = TaskHandler.State.values().length;
+
+    /**
+     * {@link Counter} keeps the number of handlers in each state for
+     * a set of tags. It is a completion primitive as well: it wakes up
+     * waiting threads when the number of handlers in some state drops
+     * to zero.
+     * <p/>
+     * A counter is changed by the queue only, but it can be read and
+     * awaited without the global lock. Waiting threads are parked using
+     * a condition, so they don't hold any monitor.
+     */
+    public static class Counter {
+
+        private final int[] counts = new int[STATE_COUNT];
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition zero = lock.newCondition();
+
+        private void add(TaskHandler.State state, int delta) {
+            lock.lock();
+            try {
+                int count = counts[state.ordinal()] += delta;
+                if (count == 0) {
+                    zero.signalAll();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Returns the number of handlers having one of the specified states.
+         *
+         * @param states the states.
+         * @return the number of handlers.
+         */
+        public int get(Collection<TaskHandler.State> states) {
+            lock.lock();
+            try {
+                int count = 0;
+                for (TaskHandler.State state : states) {
+                    count += counts[state.ordinal()];
+                }
+                return count;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Waits until there are no handlers having one of the specified states.
+         *
+         * @param states  the states.
+         * @param timeout the maximum time to wait in milliseconds or
+         *                {@code 0} to wait forever.
+         * @return {@code false} if the timeout has elapsed.
+         * @throws InterruptedException if the current thread was interrupted.
+         */
+        public boolean await(Collection<TaskHandler.State> states, long timeout) throws InterruptedException {
+            if (timeout < 0) {
+                throw new IllegalArgumentException();
+            }
+
+            lock.lock();
+            try {
+                long remaining = TimeUnit.MILLISECONDS.toNanos(timeout);
+                while (get(states) > 0) {
+                    if (timeout == 0) {
+                        zero.await();
+                    } else {
+                        if (remaining <= 0) {
+                            return false;
+                        }
+                        remaining = zero.awaitNanos(remaining);
+                    }
+                }
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+    }
+
+    /**
+     * A weak reference to a counter remembering the tags it counts.
+     */
+    private static class CounterReference extends WeakReference<Counter> {
+
+        private final Set<String> tags;
+
+        public CounterReference(Counter counter, Set<String> tags, ReferenceQueue<Counter> queue) {
+            super(counter, queue);
+            this.tags = tags;
+        }
+
+    }
+
+    /**
+     * Maps handlers onto the states they are counted in.
+     */
+    private final Map<TaskHandler, TaskHandler.State> handlers = new HashMap<TaskHandler, TaskHandler.State>();
+    private final Map<String, Set<TaskHandler>> index = new HashMap<String, Set<TaskHandler>>();
+    private final Map<Set<String>, CounterReference> counters = new HashMap<Set<String>, CounterReference>();
+    private final Map<String, List<CounterReference>> counterIndex = new HashMap<String, List<CounterReference>>();
+    private final List<CounterReference> untaggedCounters = new ArrayList<CounterReference>();
+    private final ReferenceQueue<Counter> collectedCounters = new ReferenceQueue<Counter>();
+
+    /**
+     * Returns the list a counter of the specified tags is indexed in
+     * creating it if needed.
+     */
+    private List<CounterReference> counterList(Set<String> tags, boolean create) {
+        if (tags.isEmpty()) {
+            return untaggedCounters;
+        }
+        String tag = tags.iterator().next();
+        List<CounterReference> list = counterIndex.get(tag);
+        if (list == null && create) {
+            list = new ArrayList<CounterReference>(1);
+            counterIndex.put(tag, list);
+        }
+        return list;
+    }
+
+    /**
+     * Removes the counters which aren't used any more.
+     */
+    private void expungeCounters() {
+        Reference<? extends Counter> reference;
+        while ((reference = collectedCounters.poll()) != null) {
+            CounterReference counterReference = (CounterReference) reference;
+            if (counters.get(counterReference.tags) == counterReference) {
+                counters.remove(counterReference.tags);
+            }
+            List<CounterReference> list = counterList(counterReference.tags, false);
+            if (list != null) {
+                list.remove(counterReference);
+                if (list.isEmpty() && list != untaggedCounters) {
+                    counterIndex.remove(counterReference.tags.iterator().next());
+                }
+            }
+        }
+    }
+
+    private static void count(List<CounterReference> list, Set<String> tags, TaskHandler.State state, int delta) {
+        if (list != null) {
+            for (CounterReference reference : list) {
+                Counter counter = reference.get();
+                if (counter != null && tags.containsAll(reference.tags)) {
+                    counter.add(state, delta);
+                }
+            }
+        }
+    }
+
+    private void count(TaskHandler handler, TaskHandler.State state, int delta) {
+        expungeCounters();
+
+        // each counter is indexed by one tag, so it is counted once
+        Set<String> tags = handler.owner().tags();
+        count(untaggedCounters, tags, state, delta);
+        for (String tag : tags) {
+            count(counterIndex.get(tag), tags, state, delta);
+        }
+    }
+
+    /**
+     * Returns the smallest set of handlers labeled by one of the specified
+     * tags to start intersection from.
+     */
+    private Set<TaskHandler> candidates(Collection<String> tags) {
+        Set<TaskHandler> candidates = handlers.keySet();
+        for (String tag : tags) {
+            Set<TaskHandler> set = index.get(tag);
+            if (set == null) {
+                return Collections.emptySet();
+            }
+            if (set.size() < candidates.size()) {
+                candidates = set;
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Adds a task handler to the queue.
+     *
+     * @param handler the task handler.
+     */
+    public void add(TaskHandler handler) {
+        if (!handlers.containsKey(handler)) {
+            TaskHandler.State state = handler.getState();
+            handlers.put(handler, state);
+            count(handler, state, +1);
+
+            for (String tag : handler.owner().tags()) {
+                Set<TaskHandler> set = index.get(tag);
+                if (set == null) {
+                    set = new HashSet<TaskHandler>();
+                    index.put(tag, set);
+                }
+                set.add(handler);
+            }
+        }
+    }
+
+    /**
+     * Removes a task handler from the queue.
+     *
+     * @param handler the task handler.
+     */
+    public void remove(TaskHandler handler) {
+        if (handlers.containsKey(handler)) {
+            count(handler, handlers.remove(handler), -1);
+
+            for (String tag : handler.owner().tags()) {
+                Set<TaskHandler> set = index.get(tag);
+                if (set != null && set.remove(handler) && set.isEmpty()) {
+                    index.remove(tag);
+                }
+            }
+        }
+    }
+
+    /**
+     * Updates the state a task handler is counted in.
+     *
+     * @param handler the task handler.
+     * @param state   the new state.
+     */
+    public void update(TaskHandler handler, TaskHandler.State state) {
+        if (handlers.containsKey(handler)) {
+            // increment first so waiters can't see the handler is missing
+            count(handler, state, +1);
+            count(handler, handlers.put(handler, state), -1);
+        }
+    }
+
+    /**
+     * Returns an unmodifiable copy of the set of task handlers labeled by
+     * all of the specified tags and having one of the specified states.
+     *
+     * @param tags   the tags.
+     * @param states the states.
+     * @return the set of task handlers.
+     */
+    public Set<TaskHandler> select(Collection<String> tags, Collection<TaskHandler.State> states) {
+        Set<TaskHandler> set = new HashSet<TaskHandler>();
+        for (TaskHandler handler : candidates(tags)) {
+            if (handler.owner().tags().containsAll(tags) && states.contains(handler.getState())) {
+                set.add(handler);
+            }
+        }
+        return Collections.unmodifiableSet(set);
+    }
+
+    /**
+     * Returns a counter of task handlers labeled by all of the specified tags.
+     * The counter is kept up to date by the queue while the caller keeps
+     * a reference to it.
+     *
+     * @param tags the unmodifiable set of tags.
+     * @return the counter.
+     */
+    public Counter counter(Set<String> tags) {
+        expungeCounters();
+
+        CounterReference reference = counters.get(tags);
+        Counter counter = reference != null ? reference.get() : null;
+        if (counter == null) {
+            counter = new Counter();
+            for (TaskHandler handler : candidates(tags)) {
+                if (handler.owner().tags().containsAll(tags)) {
+                    counter.add(handlers.get(handler), +1);
+                }
+            }
+            reference = new CounterReference(counter, tags, collectedCounters);
+            counters.put(tags, reference);
+            counterList(tags, true).add(reference);
+        }
+        return counter;
+    }
+
+}
@@ -28,6 +28,7 @@ package com.noveogroup.android.task;
 
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 
 public interface TaskSet extends Iterable<TaskHandler> {
@@ -61,6 +62,27 @@ public interface TaskSet extends Iterable<TaskHandler> {
 
     public TaskHandler execute(Task task, TaskListener... taskListeners);
 
+    /**
+     * Executes a batch of tasks labeled by the tags of this task set.
+     *
+     * @param tasks         the tasks.
+     * @param taskListeners additional listeners of each task.
+     * @return the group of the tasks.
+     * @see TaskExecutor#executeAll(Collection, Pack, List, Collection)
+     */
+    public TaskGroup executeAll(Collection<? extends Task> tasks, TaskListener... taskListeners);
+
+    /**
+     * Executes the value task labeled by the tags of this task set and
+     * returns a future of its result.
+     *
+     * @param task          the value task.
+     * @param taskListeners additional listeners of the task.
+     * @param <V>           the type of the result.
+     * @return the future bound to the task.
+     */
+    public <V> TaskFuture<V> submit(ValueTask<V> task, TaskListener... taskListeners);
+
     public int size();
 
     public boolean isEmpty();
@@ -1,31 +1,182 @@
+/*
+ * Copyright (c) 2014 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
 package com.noveogroup.android.task;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Utility methods composing tasks.
+ * <p/>
+ * Composite tasks don't block their working threads waiting for
+ * the children. They defer their completion using
+ * {@link TaskEnvironment#defer()} and are completed by the listeners of
+ * the children. The children are executed in the owner {@link TaskSet} of
+ * the composite task and their failures don't affect the composite task.
+ * If the composite task is interrupted it doesn't start the remaining
+ * children and fails with {@link InterruptedException}.
+ * <p/>
+ * If the environment of the composite task doesn't support
+ * {@link TaskEnvironment#defer()} the composite task blocks its working
+ * thread until the children are completed.
+ */
 public class Tasks {
 
     private Tasks() {
         throw new UnsupportedOperationException();
     }
 
-    public static Task sequence(final Task task1, final Task task2) {
+    /**
+     * Completes a composite task whose environment doesn't support
+     * deferred completion. The working thread waits for it in
+     * {@link Task#run(TaskEnvironment)}.
+     */
+    private static class BlockingContinuation implements Continuation {
+
+        private final AtomicBoolean completed = new AtomicBoolean(false);
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private volatile Throwable throwable = null;
+
+        private void complete(Throwable throwable) {
+            if (!completed.compareAndSet(false, true)) {
+                throw new IllegalStateException("continuation is already completed");
+            }
+            this.throwable = throwable;
+            latch.countDown();
+        }
+
+        @Override
+        public void succeed() {
+            complete(null);
+        }
+
+        @Override
+        public void fail(Throwable throwable) {
+            complete(throwable);
+        }
+
+        public void await() throws Throwable {
+            latch.await();
+            if (throwable != null) {
+                throw throwable;
+            }
+        }
+
+    }
+
+    private static Continuation defer(TaskEnvironment env) {
+        try {
+            return env.defer();
+        } catch (UnsupportedOperationException e) {
+            return new BlockingContinuation();
+        }
+    }
+
+    private static void await(Continuation continuation) throws Throwable {
+        if (continuation instanceof BlockingContinuation) {
+            ((BlockingContinuation) continuation).await();
+        }
+    }
+
+    /**
+     * Creates a task executing the specified tasks one by one.
+     *
+     * @param tasks the tasks.
+     * @return the composite task.
+     */
+    public static Task sequence(final Task... tasks) {
         return new Task() {
             @Override
             public void run(TaskEnvironment env) throws Throwable {
-                env.owner().execute(task1).join();
-                env.owner().execute(task2).join();
+                Continuation continuation = defer(env);
+                executeNext(env, continuation, tasks, 0);
+                await(continuation);
             }
         };
     }
 
-    public static Task parallel(final Task task1, final Task task2) {
+    private static void executeNext(final TaskEnvironment env, final Continuation continuation,
+                                    final Task[] tasks, final int index) {
+        if (env.isInterrupted()) {
+            continuation.fail(new InterruptedException());
+        } else if (index == tasks.length) {
+            continuation.succeed();
+        } else {
+            try {
+                env.owner().execute(tasks[index], new TaskListener.Default() {
+                    @Override
+                    public void onDestroy(TaskHandler handler) {
+                        executeNext(env, continuation, tasks, index + 1);
+                    }
+                });
+            } catch (Throwable throwable) {
+                continuation.fail(throwable);
+            }
+        }
+    }
+
+    /**
+     * Creates a task executing the specified tasks simultaneously.
+     *
+     * @param tasks the tasks.
+     * @return the composite task.
+     */
+    public static Task parallel(final Task... tasks) {
         return new Task() {
             @Override
-            public void run(TaskEnvironment env) throws Throwable {
-                TaskHandler handler1 = env.owner().execute(task1);
-                TaskHandler handler2 = env.owner().execute(task2);
-                handler1.join();
-                handler2.join();
+            public void run(final TaskEnvironment env) throws Throwable {
+                final Continuation continuation = defer(env);
+                final AtomicInteger counter = new AtomicInteger(tasks.length + 1);
+                TaskListener listener = new TaskListener.Default() {
+                    @Override
+                    public void onDestroy(TaskHandler handler) {
+                        countDown(env, continuation, counter);
+                    }
+                };
+
+                for (Task task : tasks) {
+                    env.owner().execute(task, listener);
+                }
+                countDown(env, continuation, counter);
+                await(continuation);
             }
         };
     }
 
+    private static void countDown(TaskEnvironment env, Continuation continuation, AtomicInteger counter) {
+        if (counter.decrementAndGet() == 0) {
+            if (env.isInterrupted()) {
+                continuation.fail(new InterruptedException());
+            } else {
+                continuation.succeed();
+            }
+        }
+    }
+
 }
@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2014 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.noveogroup.android.task;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link ThreadPerTaskExecutor} is an implementation of the {@link TaskExecutor}
+ * interface running each task in its own thread created by a thread factory.
+ * <p/>
+ * It is intended to be used with virtual threads: a task blocking on I/O
+ * parks its virtual thread only and doesn't need a big pool of platform
+ * threads. Tags, listeners and concurrency limits work the same way as in
+ * {@link SimpleTaskExecutor}, so the limits can be used as bulkheads
+ * protecting shared resources. Tasks are dispatched in single-hop mode,
+ * so each task gets exactly one thread.
+ * <p/>
+ * The queue of tasks is still guarded by the global monitor returned by
+ * {@link #lock()}, which is entered when a task is created, started and
+ * finished. The monitor is a part of the public contract, so it can't be
+ * replaced by a {@link ReentrantLock}. Before JDK 24 a virtual thread
+ * entering a contended monitor pins its carrier thread, so under heavy
+ * contention on the queue virtual threads scale like platform ones.
+ *
+ * @see #newVirtualThreadFactory()
+ */
+public class ThreadPerTaskExecutor extends SimpleTaskExecutor {
+
+    static class ThreadPerTaskExecutorService extends AbstractExecutorService {
+
+        private final ThreadFactory threadFactory;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition terminated = lock.newCondition();
+        private final Set<Thread> threads = new HashSet<Thread>();
+        private int threadCount = 0;
+        private boolean shutdown = false;
+        private boolean stopped = false;
+
+        ThreadPerTaskExecutorService(ThreadFactory threadFactory) {
+            this.threadFactory = threadFactory;
+        }
+
+        @Override
+        public void execute(final Runnable command) {
+            lock.lock();
+            try {
+                if (shutdown) {
+                    throw new RejectedExecutionException();
+                }
+                threadCount++;
+            } finally {
+                lock.unlock();
+            }
+
+            Thread thread = threadFactory.newThread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        command.run();
+                    } finally {
+                        finishThread(Thread.currentThread());
+                    }
+                }
+            });
+            if (thread == null) {
+                finishThread(null);
+                throw new RejectedExecutionException();
+            }
+
+            // the thread is tracked before the start so it can be interrupted
+            boolean interrupt;
+            lock.lock();
+            try {
+                threads.add(thread);
+                interrupt = stopped;
+            } finally {
+                lock.unlock();
+            }
+            thread.start();
+            if (interrupt) {
+                thread.interrupt();
+            }
+        }
+
+        private void finishThread(Thread thread) {
+            lock.lock();
+            try {
+                threads.remove(thread);
+                threadCount--;
+                if (threadCount == 0) {
+                    terminated.signalAll();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            lock.lock();
+            try {
+                shutdown = true;
+                terminated.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Shuts down the executor service and interrupts all of the running
+         * threads. Commands are never queued, each of them gets a thread
+         * right away, so there are no waiting commands to return.
+         *
+         * @return an empty list.
+         */
+        @Override
+        public List<Runnable> shutdownNow() {
+            List<Thread> runningThreads;
+            lock.lock();
+            try {
+                shutdown = true;
+                stopped = true;
+                terminated.signalAll();
+                runningThreads = new ArrayList<Thread>(threads);
+            } finally {
+                lock.unlock();
+            }
+
+            for (Thread thread : runningThreads) {
+                thread.interrupt();
+            }
+            return new ArrayList<Runnable>();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            lock.lock();
+            try {
+                return shutdown;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public boolean isTerminated() {
+            lock.lock();
+            try {
+                return shutdown && threadCount == 0;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            lock.lock();
+            try {
+                long remaining = unit.toNanos(timeout);
+                while (!shutdown || threadCount > 0) {
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    remaining = terminated.awaitNanos(remaining);
+                }
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+    }
+
+    private final ThreadPerTaskExecutorService executorService;
+
+    /**
+     * Returns a factory creating virtual threads if the platform supports them.
+     *
+     * @return the thread factory or {@code null} if virtual threads
+     * are not supported.
+     */
+    public static ThreadFactory newVirtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Creates new instance of {@link ThreadPerTaskExecutor}.
+     *
+     * @param threadFactory the factory creating a thread for each task.
+     * @see #newVirtualThreadFactory()
+     */
+    public ThreadPerTaskExecutor(ThreadFactory threadFactory) {
+        this(new ThreadPerTaskExecutorService(threadFactory));
+    }
+
+    private ThreadPerTaskExecutor(ThreadPerTaskExecutorService executorService) {
+        super(executorService);
+        this.executorService = executorService;
+        setSingleHopDispatch(true);
+    }
+
+    /**
+     * Shuts down this executor. Tasks which have been already started are
+     * completed but no new tasks can be started.
+     */
+    public void shutdown() {
+        executorService.shutdown();
+    }
+
+}
@@ -0,0 +1,92 @@
+package com.noveogroup.android.task;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ForkJoinTaskExecutorTest {
+
+    /**
+     * Counts tasks submitted to the pool from outside instead of being
+     * forked by its working threads.
+     */
+    private static class CountingPool extends ForkJoinPool {
+
+        private final AtomicInteger submissionCounter = new AtomicInteger();
+
+        private CountingPool(int parallelism) {
+            super(parallelism);
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            submissionCounter.incrementAndGet();
+            super.execute(task);
+        }
+
+    }
+
+    private static Task createSplitTask(final int depth, final AtomicInteger leafCounter, final AtomicInteger workerCounter) {
+        return new Task() {
+            @Override
+            public void run(TaskEnvironment env) throws Throwable {
+                if (ForkJoinTask.inForkJoinPool()) {
+                    workerCounter.incrementAndGet();
+                }
+                if (depth == 0) {
+                    leafCounter.incrementAndGet();
+                } else {
+                    env.owner().execute(createSplitTask(depth - 1, leafCounter, workerCounter));
+                    env.owner().execute(createSplitTask(depth - 1, leafCounter, workerCounter));
+                }
+            }
+        };
+    }
+
+    @Test
+    public void forkTest() throws InterruptedException {
+        CountingPool pool = new CountingPool(2);
+        try {
+            ForkJoinTaskExecutor executor = new ForkJoinTaskExecutor(pool);
+            AtomicInteger leafCounter = new AtomicInteger();
+            AtomicInteger workerCounter = new AtomicInteger();
+
+            executor.execute(createSplitTask(6, leafCounter, workerCounter), "tile");
+            Assert.assertTrue(executor.queue("tile").join(100 * Utils.DT));
+
+            Assert.assertEquals(64, leafCounter.get());
+            Assert.assertEquals(127, workerCounter.get());
+            // only the root task is submitted, the subtasks are forked
+            Assert.assertEquals(1, pool.submissionCounter.get());
+            Assert.assertTrue(executor.queue().isEmpty());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void singleHopForkTest() throws InterruptedException {
+        CountingPool pool = new CountingPool(2);
+        try {
+            ForkJoinTaskExecutor executor = new ForkJoinTaskExecutor(pool);
+            executor.setSingleHopDispatch(true);
+            executor.setPriority("tile", 1);
+            AtomicInteger leafCounter = new AtomicInteger();
+            AtomicInteger workerCounter = new AtomicInteger();
+
+            executor.execute(createSplitTask(6, leafCounter, workerCounter), "tile");
+            Assert.assertTrue(executor.queue("tile").join(100 * Utils.DT));
+
+            Assert.assertEquals(64, leafCounter.get());
+            Assert.assertEquals(127, workerCounter.get());
+            // only the root task is submitted, the subtasks are forked
+            Assert.assertEquals(1, pool.submissionCounter.get());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,88 @@
+package com.noveogroup.android.task;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class ListenerSetTest {
+
+    private static class DestroyListener extends TaskListener.Default {
+
+        @Override
+        public void onDestroy(TaskHandler handler) {
+        }
+
+    }
+
+    private static class StartDestroyListener extends DestroyListener {
+
+        @Override
+        public void onStart(TaskHandler handler) {
+        }
+
+    }
+
+    @Test
+    public void maskTest() {
+        TaskListener destroyListener = new DestroyListener();
+        TaskListener startDestroyListener = new StartDestroyListener();
+        TaskListener defaultListener = new TaskListener.Default();
+
+        ListenerSet listenerSet = new ListenerSet(Arrays.asList(destroyListener, startDestroyListener, defaultListener));
+        Assert.assertEquals(3, listenerSet.size());
+        Assert.assertEquals(0, listenerSet.onCreate.length);
+        Assert.assertEquals(0, listenerSet.onSucceed.length);
+        Assert.assertArrayEquals(new TaskListener[]{startDestroyListener}, listenerSet.onStart);
+        Assert.assertArrayEquals(new TaskListener[]{startDestroyListener, destroyListener}, listenerSet.onDestroy);
+    }
+
+    @Test
+    public void interfaceTest() {
+        // a listener implementing the interface handles all of the events
+        TaskListener logListener = new TaskListener() {
+            @Override
+            public void onCreate(TaskHandler handler) {
+            }
+
+            @Override
+            public void onQueueInsert(TaskHandler handler) {
+            }
+
+            @Override
+            public void onStart(TaskHandler handler) {
+            }
+
+            @Override
+            public void onFinish(TaskHandler handler) {
+            }
+
+            @Override
+            public void onQueueRemove(TaskHandler handler) {
+            }
+
+            @Override
+            public void onDestroy(TaskHandler handler) {
+            }
+
+            @Override
+            public void onCanceled(TaskHandler handler) {
+            }
+
+            @Override
+            public void onFailed(TaskHandler handler) {
+            }
+
+            @Override
+            public void onSucceed(TaskHandler handler) {
+            }
+        };
+        TaskListener destroyListener = new DestroyListener();
+
+        ListenerSet listenerSet = new ListenerSet(Arrays.asList(logListener, destroyListener));
+        Assert.assertArrayEquals(new TaskListener[]{logListener}, listenerSet.onCreate);
+        Assert.assertArrayEquals(new TaskListener[]{destroyListener, logListener}, listenerSet.onDestroy);
+        Assert.assertArrayEquals(new TaskListener[]{logListener}, listenerSet.onCanceled);
+    }
+
+}
@@ -123,6 +123,108 @@ public class PackTest {
         helper.check("[thread-A][clone-A][thread-B][clone-B]");
     }
 
+    @Test
+    public void testCopyOnWrite() {
+        Pack pack = new Pack().put("key1", "value1");
+        Pack copyPack = new Pack(pack);
+        Pack otherPack = new Pack().putAll(pack);
+
+        pack.put("key2", "value2");
+        copyPack.remove("key1");
+        otherPack.put("key1", "other");
+
+        Assert.assertEquals(Utils.set("key1", "key2"), pack.keySet());
+        Assert.assertEquals("value1", pack.get("key1"));
+        Assert.assertTrue(copyPack.isEmpty());
+        Assert.assertEquals("other", otherPack.get("key1"));
+
+        copyPack.clear();
+        pack.clear();
+        Assert.assertEquals("other", otherPack.get("key1"));
+    }
+
+    @Test
+    public void testKeys() {
+        Pack pack = new Pack().put("key2", "value2");
+        Pack.Key<String> key1 = Pack.Key.of("key1");
+        Pack.Key<String> key2 = Pack.Key.of("key2");
+        Assert.assertSame(key1, Pack.Key.of("key1"));
+
+        pack.put(key1, "value1");
+        Assert.assertEquals("value1", pack.get(key1));
+        Assert.assertEquals("value1", pack.get("key1"));
+        Assert.assertEquals("value2", pack.get(key2));
+        Assert.assertEquals(Utils.set("key1", "key2"), pack.keySet());
+
+        // a string key replaces the value stored in the slot of its key
+        pack.put("key1", "other").put("key1", "value1");
+        Assert.assertEquals("value1", pack.get(key1));
+        Assert.assertEquals(2, pack.size());
+
+        Pack copyPack = new Pack(pack).put(key2, null);
+        Assert.assertTrue(copyPack.containsKey("key2"));
+        Assert.assertNull(copyPack.get(key2));
+        Assert.assertEquals(2, copyPack.size());
+        Assert.assertEquals("value2", pack.get(key2, "default"));
+
+        pack.remove("key1").remove(key2);
+        Assert.assertTrue(pack.isEmpty());
+        Assert.assertEquals("value1", copyPack.get(key1));
+    }
+
+    @Test
+    public void testPrimitives() {
+        Pack pack = new Pack().putInt("int", 1).putLong("long", 2).putBoolean("boolean", true);
+        Assert.assertEquals(2, pack.incrementInt("int"));
+        Assert.assertEquals(5, pack.addLong("long", 3));
+        Assert.assertEquals(Integer.valueOf(2), pack.get("int"));
+        Assert.assertEquals(5.0, pack.getDouble("long", 0), 0);
+        Assert.assertTrue(pack.getBoolean("boolean", false));
+        Assert.assertEquals(7, pack.getInt("absent", 7));
+
+        // the cells aren't shared between copies
+        Pack copyPack = new Pack(pack);
+        Pack otherPack = new Pack().put("other", null).putAll(pack);
+        copyPack.incrementInt("int");
+        otherPack.incrementInt("int");
+        pack.putInt("int", 10);
+        Assert.assertEquals(3, copyPack.getInt("int", 0));
+        Assert.assertEquals(3, otherPack.getInt("int", 0));
+        Assert.assertEquals(10, pack.getInt("int", 0));
+    }
+
+    @Test
+    public void testIteratorSnapshot() {
+        Pack pack = new Pack().put("key1", "value1").put(Pack.Key.<String>of("key2"), "value2");
+
+        Iterator<String> iterator = pack.iterator();
+        pack.put("key3", "value3");
+        while (iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+
+        Assert.assertEquals(Utils.set("key3"), pack.keySet());
+    }
+
+    @Test
+    public void testIteratorFinished() {
+        Pack pack = new Pack().put("key1", "value1");
+
+        // a finished iteration doesn't protect the arguments any more,
+        // a live one still sees its snapshot
+        Iterator<String> liveIterator = pack.iterator();
+        for (String key : pack) {
+            pack.put(key, "other");
+        }
+        pack.put("key2", "value2");
+        pack.remove("key1");
+
+        Assert.assertEquals("key1", liveIterator.next());
+        Assert.assertFalse(liveIterator.hasNext());
+        Assert.assertEquals(Utils.set("key2"), pack.keySet());
+    }
+
     @Test
     public void testEmpty() {
         Pack pack = new Pack();
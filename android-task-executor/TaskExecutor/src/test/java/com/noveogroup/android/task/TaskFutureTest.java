@@ -0,0 +1,140 @@
+package com.noveogroup.android.task;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class TaskFutureTest {
+
+    private ExecutorService executorService;
+    private TaskExecutor executor;
+
+    @Before
+    public void setUp() {
+        executorService = Executors.newSingleThreadExecutor();
+        executor = new SimpleTaskExecutor(executorService);
+    }
+
+    @After
+    public void tearDown() {
+        executorService.shutdown();
+    }
+
+    @Test
+    public void getTest() throws Exception {
+        TaskFuture<String> future = executor.queue("a").submit(new ValueTask<String>() {
+            @Override
+            public String run(TaskEnvironment env) throws Throwable {
+                return "value";
+            }
+        });
+
+        Assert.assertEquals("value", future.get(100 * Utils.DT, TimeUnit.MILLISECONDS));
+        Assert.assertTrue(future.isDone());
+        Assert.assertFalse(future.isCancelled());
+        Assert.assertTrue(future.handler().owner().tags().contains("a"));
+    }
+
+    @Test
+    public void callbackTest() throws Exception {
+        final Helper helper = new Helper();
+        TaskFuture<Integer> future = executor.submit(new ValueTask<Integer>() {
+            @Override
+            public Integer run(TaskEnvironment env) throws Throwable {
+                return 20;
+            }
+        }).thenApply(new TaskFuture.Function<Integer, Integer>() {
+            @Override
+            public Integer apply(Integer value) throws Throwable {
+                return value + 1;
+            }
+        }).whenComplete(new TaskFuture.Callback<Integer>() {
+            @Override
+            public void onComplete(Integer value, Throwable throwable) throws Throwable {
+                helper.append("[%s:%s]", value, throwable);
+            }
+        });
+
+        Assert.assertEquals(Integer.valueOf(21), future.get(100 * Utils.DT, TimeUnit.MILLISECONDS));
+        helper.check("[21:null]");
+
+        // callbacks of a completed future are called right away
+        future.thenAccept(new TaskFuture.Consumer<Integer>() {
+            @Override
+            public void accept(Integer value) throws Throwable {
+                helper.append("[%s]", value);
+            }
+        });
+        helper.check("[21:null][21]");
+    }
+
+    @Test
+    public void failureTest() throws Exception {
+        final Exception error = new Exception();
+        final AtomicReference<Throwable> callbackError = new AtomicReference<Throwable>();
+        TaskFuture<Void> future = executor.submit(new ValueTask<String>() {
+            @Override
+            public String run(TaskEnvironment env) throws Throwable {
+                throw error;
+            }
+        }).thenAccept(new TaskFuture.Consumer<String>() {
+            @Override
+            public void accept(String value) throws Throwable {
+                Assert.fail();
+            }
+        }).whenComplete(new TaskFuture.Callback<Void>() {
+            @Override
+            public void onComplete(Void value, Throwable throwable) throws Throwable {
+                callbackError.set(throwable);
+            }
+        });
+
+        try {
+            future.get(100 * Utils.DT, TimeUnit.MILLISECONDS);
+            Assert.fail();
+        } catch (ExecutionException e) {
+            Assert.assertSame(error, e.getCause());
+        }
+        Assert.assertSame(error, callbackError.get());
+    }
+
+    @Test
+    public void cancelTest() throws Exception {
+        // block the only working thread so the next task stays created
+        final CountDownLatch latch = new CountDownLatch(1);
+        executor.execute(new Task() {
+            @Override
+            public void run(TaskEnvironment env) throws Throwable {
+                latch.await();
+            }
+        });
+
+        TaskFuture<String> future = executor.submit(new ValueTask<String>() {
+            @Override
+            public String run(TaskEnvironment env) throws Throwable {
+                return "value";
+            }
+        });
+        Assert.assertTrue(future.cancel(false));
+        Assert.assertFalse(future.cancel(false));
+        Assert.assertTrue(future.isCancelled());
+        Assert.assertEquals(TaskHandler.State.CANCELED, future.handler().getState());
+
+        try {
+            future.get();
+            Assert.fail();
+        } catch (CancellationException ignored) {
+        }
+        latch.countDown();
+    }
+
+}
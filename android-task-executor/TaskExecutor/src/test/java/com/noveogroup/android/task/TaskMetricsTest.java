@@ -0,0 +1,104 @@
+package com.noveogroup.android.task;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class TaskMetricsTest {
+
+    @Test
+    public void countersTest() throws InterruptedException {
+        SimpleTaskExecutor executor = new SimpleTaskExecutor(Executors.newSingleThreadExecutor());
+        TaskMetrics metrics = executor.getMetrics();
+        metrics.setEnabled(true);
+
+        // occupy the only working thread
+        final CountDownLatch latch = new CountDownLatch(1);
+        TaskHandler blockingHandler = executor.execute(new Task() {
+            @Override
+            public void run(TaskEnvironment env) throws Throwable {
+                latch.await();
+            }
+        }, "block");
+
+        TaskHandler succeedHandler = executor.execute(new Task() {
+            @Override
+            public void run(TaskEnvironment env) throws Throwable {
+                Thread.sleep(5 * Utils.DT);
+            }
+        }, "db");
+        TaskHandler failHandler = executor.execute(new Task() {
+            @Override
+            public void run(TaskEnvironment env) throws Throwable {
+                throw new RuntimeException();
+            }
+        }, "db", "net");
+        TaskHandler cancelHandler = executor.execute(new Task() {
+            @Override
+            public void run(TaskEnvironment env) throws Throwable {
+            }
+        }, "net");
+        cancelHandler.interrupt();
+
+        latch.countDown();
+        Assert.assertTrue(blockingHandler.join(100 * Utils.DT));
+        Assert.assertTrue(succeedHandler.join(100 * Utils.DT));
+        Assert.assertTrue(failHandler.join(100 * Utils.DT));
+        executor.queue().join();
+        Thread.sleep(Utils.DT);
+
+        TaskMetrics.Snapshot total = metrics.getTotal();
+        Assert.assertEquals(4, total.getSubmitted());
+        Assert.assertEquals(3, total.getStarted());
+        Assert.assertEquals(2, total.getSucceeded());
+        Assert.assertEquals(1, total.getFailed());
+        Assert.assertEquals(1, total.getCanceled());
+        Assert.assertEquals(3, total.getQueueWaitTime().getCount());
+
+        TaskMetrics.Snapshot db = metrics.get("db");
+        Assert.assertEquals(2, db.getSubmitted());
+        Assert.assertEquals(1, db.getSucceeded());
+        Assert.assertEquals(1, db.getFailed());
+        Assert.assertTrue(db.getRunTime().getMax() >= TimeUnit.MILLISECONDS.toNanos(5 * Utils.DT));
+        Assert.assertEquals(1, metrics.get("net").getCanceled());
+        Assert.assertEquals(Utils.set("block", "db", "net"), metrics.getTags());
+
+        // reset returns the metrics of the interval
+        Assert.assertEquals(4, metrics.getTotal(true).getSubmitted());
+        Assert.assertEquals(0, metrics.getTotal().getSubmitted());
+        metrics.reset();
+        Assert.assertEquals(0, metrics.get("db").getRunTime().getCount());
+    }
+
+    @Test
+    public void histogramTest() throws InterruptedException {
+        SimpleTaskExecutor executor = new SimpleTaskExecutor(Executors.newFixedThreadPool(3));
+        executor.getMetrics().setEnabled(true);
+
+        for (int i = 0; i < 100; i++) {
+            final int index = i;
+            executor.execute(new Task() {
+                @Override
+                public void run(TaskEnvironment env) throws Throwable {
+                    if (index >= 90) {
+                        Thread.sleep(2 * Utils.DT);
+                    }
+                }
+            });
+        }
+        executor.queue().join();
+        Thread.sleep(Utils.DT);
+
+        TaskMetrics.Histogram runTime = executor.getMetrics().getTotal().getRunTime();
+        long slowTime = TimeUnit.MILLISECONDS.toNanos(2 * Utils.DT);
+        Assert.assertEquals(100, runTime.getCount());
+        Assert.assertTrue(runTime.getPercentile(50) < slowTime);
+        Assert.assertTrue(runTime.getPercentile(95) >= slowTime);
+        Assert.assertEquals(runTime.getMax(), runTime.getPercentile(100));
+        Assert.assertTrue(runTime.getMean() <= runTime.getMax());
+    }
+
+}
@@ -0,0 +1,201 @@
+package com.noveogroup.android.task;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class TaskSetTest {
+
+    private final CountDownLatch latch = new CountDownLatch(1);
+    private final Task task = new Task() {
+        @Override
+        public void run(TaskEnvironment env) throws Throwable {
+            latch.await();
+        }
+    };
+
+    private SimpleTaskExecutor executor;
+    private TaskHandler blocker;
+
+    @Before
+    public void setUp() throws InterruptedException {
+        executor = new SimpleTaskExecutor(Executors.newSingleThreadExecutor());
+        executor.setSingleHopDispatch(true);
+
+        // occupy the only working thread so other tasks stay created
+        final CountDownLatch started = new CountDownLatch(1);
+        blocker = executor.execute(new Task() {
+            @Override
+            public void run(TaskEnvironment env) throws Throwable {
+                started.countDown();
+                latch.await();
+            }
+        }, "blocker");
+        started.await();
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        latch.countDown();
+        executor.queue().join();
+    }
+
+    private static Set<TaskHandler> set(TaskHandler... handlers) {
+        Set<TaskHandler> set = new HashSet<TaskHandler>();
+        for (TaskHandler handler : handlers) {
+            set.add(handler);
+        }
+        return set;
+    }
+
+    private static Set<TaskHandler> set(TaskSet taskSet) {
+        Set<TaskHandler> set = new HashSet<TaskHandler>();
+        for (TaskHandler handler : taskSet) {
+            set.add(handler);
+        }
+        return set;
+    }
+
+    @Test
+    public void queueTest() {
+        TaskHandler a = executor.execute(task, "a");
+        TaskHandler ab = executor.execute(task, "a", "b");
+        TaskHandler bc = executor.execute(task, "b", "c");
+
+        Assert.assertEquals(set(blocker, a, ab, bc), set(executor.queue()));
+        Assert.assertEquals(set(a, ab), set(executor.queue("a")));
+        Assert.assertEquals(set(ab, bc), set(executor.queue("b")));
+        Assert.assertEquals(set(ab), set(executor.queue("a", "b")));
+        Assert.assertEquals(set(ab), set(executor.queue("b").sub("a")));
+        Assert.assertEquals(set(), set(executor.queue("a", "c")));
+        Assert.assertEquals(set(), set(executor.queue("d")));
+        Assert.assertEquals(set(blocker), set(executor.queue().filter(TaskHandler.State.STARTED)));
+        Assert.assertEquals(set(a, ab), set(executor.queue("a").filter(TaskHandler.State.CREATED)));
+
+        ab.interrupt();
+        Assert.assertEquals(set(a), set(executor.queue("a")));
+        Assert.assertEquals(set(bc), set(executor.queue("b")));
+
+        executor.queue("b").interrupt();
+        Assert.assertEquals(set(blocker, a), set(executor.queue()));
+        Assert.assertEquals(set(), set(executor.queue("c")));
+    }
+
+    @Test
+    public void sizeTest() {
+        Assert.assertEquals(1, executor.queue().size());
+        Assert.assertEquals(0, executor.queue("a").size());
+        Assert.assertTrue(executor.queue("a").isEmpty());
+
+        TaskHandler a = executor.execute(task, "a");
+        TaskHandler ab = executor.execute(task, "a", "b");
+        executor.execute(task, "b", "c");
+
+        Assert.assertEquals(4, executor.queue().size());
+        Assert.assertEquals(2, executor.queue("a").size());
+        Assert.assertEquals(1, executor.queue("a", "b").size());
+        Assert.assertEquals(1, executor.queue().filter(TaskHandler.State.STARTED).size());
+        Assert.assertEquals(3, executor.queue().filter(TaskHandler.State.CREATED).size());
+        Assert.assertEquals(0, executor.queue("a").filter(TaskHandler.State.STARTED).size());
+        Assert.assertFalse(executor.queue("a").isEmpty());
+
+        a.interrupt();
+        ab.interrupt();
+        Assert.assertEquals(2, executor.queue().size());
+        Assert.assertEquals(0, executor.queue("a").size());
+        Assert.assertTrue(executor.queue("a").isEmpty());
+        Assert.assertEquals(1, executor.queue("c").size());
+        Assert.assertEquals(set(executor.queue("b")).size(), executor.queue("b").size());
+    }
+
+    @Test
+    public void joinTest() throws InterruptedException {
+        executor.execute(task, "a");
+        executor.execute(task, "a", "b");
+        executor.execute(task, "c");
+
+        Assert.assertTrue(executor.queue("d").join(Utils.DT));
+        Assert.assertFalse(executor.queue("a").join(Utils.DT));
+
+        executor.queue("a").interrupt();
+        Assert.assertTrue(executor.queue("a").join(Utils.DT));
+        Assert.assertFalse(executor.queue().join(Utils.DT));
+
+        latch.countDown();
+        Assert.assertTrue(executor.queue().join(100 * Utils.DT));
+        Assert.assertTrue(executor.queue().isEmpty());
+    }
+
+    @Test
+    public void executeAllTest() throws InterruptedException {
+        final Helper helper = new Helper();
+        final CountDownLatch destroyed = new CountDownLatch(3);
+        TaskListener listener = new TaskListener.Default() {
+            @Override
+            public void onDestroy(TaskHandler handler) {
+                helper.append("[%s]", handler.getState());
+                destroyed.countDown();
+            }
+        };
+
+        TaskGroup group = executor.queue("a").executeAll(Arrays.asList(task, task, task), listener);
+        Assert.assertEquals(3, group.size());
+        Assert.assertEquals(set(group.handlers().toArray(new TaskHandler[3])), set(executor.queue("a")));
+        Assert.assertFalse(group.join(Utils.DT));
+
+        group.interrupt();
+        Assert.assertTrue(executor.queue("a").isEmpty());
+        Assert.assertTrue(group.join(100 * Utils.DT));
+        for (TaskHandler handler : group) {
+            Assert.assertEquals(TaskHandler.State.CANCELED, handler.getState());
+        }
+
+        latch.countDown();
+        Assert.assertTrue(destroyed.await(100 * Utils.DT, TimeUnit.MILLISECONDS));
+        helper.check("[CANCELED][CANCELED][CANCELED]");
+    }
+
+    @Test
+    public void counterReleaseTest() throws InterruptedException {
+        TaskQueue queue = new TaskQueue();
+        Set<String> tags = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList("item")));
+
+        // the queue doesn't keep counters nobody uses
+        WeakReference<TaskQueue.Counter> reference = new WeakReference<TaskQueue.Counter>(queue.counter(tags));
+        for (int i = 0; i < 100 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(Utils.DT);
+        }
+        Assert.assertNull(reference.get());
+
+        // a counter in use is kept up to date
+        TaskExecutor executor = new SimpleTaskExecutor(Executors.newSingleThreadExecutor());
+        TaskSet taskSet = executor.queue("item");
+        Assert.assertTrue(taskSet.isEmpty());
+        final CountDownLatch latch = new CountDownLatch(1);
+        executor.execute(new Task() {
+            @Override
+            public void run(TaskEnvironment env) throws Throwable {
+                latch.await();
+            }
+        }, "item", "other");
+        for (int i = 0; i < 1000; i++) {
+            executor.queue("item-" + i).isEmpty();
+        }
+        System.gc();
+        Assert.assertEquals(1, taskSet.size());
+        latch.countDown();
+        Assert.assertTrue(taskSet.join(100 * Utils.DT));
+    }
+
+}
@@ -1,12 +1,16 @@
 package com.noveogroup.android.task;
 
+import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class TaskTest {
 
-    private TaskExecutor createTaskExecutor() {
+    private SimpleTaskExecutor createTaskExecutor() {
         return new SimpleTaskExecutor(Executors.newFixedThreadPool(3)) {
             @Override
             protected TaskEnvironment createTaskEnvironment(TaskHandler taskHandler) {
@@ -15,6 +19,55 @@ public class TaskTest {
         };
     }
 
+    private static TaskListener createLogListener(final Helper helper) {
+        return new TaskListener() {
+            @Override
+            public void onCreate(TaskHandler handler) {
+                helper.append("[onCreate]");
+            }
+
+            @Override
+            public void onQueueInsert(TaskHandler handler) {
+                helper.append("[onQueueInsert]");
+            }
+
+            @Override
+            public void onStart(TaskHandler handler) {
+                helper.append("[onStart]");
+            }
+
+            @Override
+            public void onFinish(TaskHandler handler) {
+                helper.append("[onFinish]");
+            }
+
+            @Override
+            public void onQueueRemove(TaskHandler handler) {
+                helper.append("[onQueueRemove]");
+            }
+
+            @Override
+            public void onDestroy(TaskHandler handler) {
+                helper.append("[onDestroy]");
+            }
+
+            @Override
+            public void onCanceled(TaskHandler handler) {
+                helper.append("[onCanceled]");
+            }
+
+            @Override
+            public void onFailed(TaskHandler handler) {
+                helper.append("[onFailed]");
+            }
+
+            @Override
+            public void onSucceed(TaskHandler handler) {
+                helper.append("[onSucceed]");
+            }
+        };
+    }
+
     @Test
     public void runTest() throws InterruptedException {
         final Helper helper = new Helper();
@@ -31,4 +84,402 @@ public class TaskTest {
         helper.check("Task::run");
     }
 
+    private void testListenerOrder(boolean singleHop) throws InterruptedException {
+        final Helper helper = new Helper();
+
+        SimpleTaskExecutor executor = createTaskExecutor();
+        executor.setSingleHopDispatch(singleHop);
+        executor.execute(new Task() {
+            @Override
+            public void run(TaskEnvironment env) throws Throwable {
+                helper.append("[run]");
+            }
+        }, createLogListener(helper)).join();
+
+        helper.check("[onCreate][onQueueInsert][onStart][run]"
+                + "[onFinish][onSucceed][onQueueRemove][onDestroy]");
+    }
+
+    @Test
+    public void listenerOrderTest() throws InterruptedException {
+        testListenerOrder(false);
+    }
+
+    @Test
+    public void singleHopListenerOrderTest() throws InterruptedException {
+        testListenerOrder(true);
+    }
+
+    @Test
+    public void globalListenerOrderTest() throws InterruptedException {
+        final Helper helper = new Helper();
+
+        SimpleTaskExecutor executor = createTaskExecutor();
+        executor.addTaskListener(new TaskListener.Default() {
+            @Override
+            public void onStart(TaskHandler handler) {
+                helper.append("[global:onStart]");
+            }
+
+            @Override
+            public void onDestroy(TaskHandler handler) {
+                helper.append("[global:onDestroy]");
+            }
+        });
+
+        // own listeners of the task are called after the global ones
+        // at creation and before them at destruction
+        executor.execute(new Task() {
+            @Override
+            public void run(TaskEnvironment env) throws Throwable {
+                helper.append("[run]");
+            }
+        }, createLogListener(helper)).join();
+
+        helper.check("[onCreate][onQueueInsert][global:onStart][onStart][run]"
+                + "[onFinish][onSucceed][onQueueRemove][onDestroy][global:onDestroy]");
+    }
+
+    @Test
+    public void singleHopCancelTest() throws InterruptedException {
+        final Helper helper = new Helper();
+
+        SimpleTaskExecutor executor = new SimpleTaskExecutor(Executors.newSingleThreadExecutor());
+        executor.setSingleHopDispatch(true);
+
+        // occupy the only working thread
+        final CountDownLatch latch = new CountDownLatch(1);
+        executor.execute(new Task() {
+            @Override
+            public void run(TaskEnvironment env) throws Throwable {
+                latch.await();
+            }
+        });
+
+        TaskHandler handler = executor.execute(new Task() {
+            @Override
+            public void run(TaskEnvironment env) throws Throwable {
+                helper.append("[run]");
+            }
+        }, createLogListener(helper));
+        handler.interrupt();
+        Assert.assertEquals(TaskHandler.State.CANCELED, handler.getState());
+
+        latch.countDown();
+        executor.queue().join();
+        Thread.sleep(Utils.DT);
+
+        helper.check("[onCreate][onCanceled][onDestroy]");
+    }
+
+    @Test
+    public void stateWithoutLockTest() throws InterruptedException {
+        final SimpleTaskExecutor executor = createTaskExecutor();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch locked = new CountDownLatch(1);
+        final CountDownLatch unlock = new CountDownLatch(1);
+
+        TaskHandler handler = executor.execute(new Task() {
+            @Override
+            public void run(TaskEnvironment env) throws Throwable {
+                started.countDown();
+                while (!env.isInterrupted()) {
+                    Thread.yield();
+                }
+            }
+        });
+        started.await();
+
+        // hold the global lock in another thread
+        new Thread() {
+            @Override
+            public void run() {
+                synchronized (executor.lock()) {
+                    locked.countDown();
+                    try {
+                        unlock.await();
+                    } catch (InterruptedException ignored) {
+                    }
+                }
+            }
+        }.start();
+        locked.await();
+
+        Assert.assertFalse(handler.isInterrupted());
+        handler.interrupt();
+        Assert.assertTrue(handler.isInterrupted());
+
+        unlock.countDown();
+        Assert.assertTrue(handler.join(100 * Utils.DT));
+        Assert.assertEquals(TaskHandler.State.SUCCEED, handler.getState());
+    }
+
+    private static Task createSleepTask(final CountDownLatch started) {
+        return new Task() {
+            @Override
+            public void run(TaskEnvironment env) throws Throwable {
+                started.countDown();
+                Thread.sleep(1000 * Utils.DT);
+            }
+        };
+    }
+
+    @Test
+    public void interruptRunningTest() throws InterruptedException {
+        TaskExecutor executor = createTaskExecutor();
+        CountDownLatch started = new CountDownLatch(1);
+
+        TaskHandler handler = executor.execute(createSleepTask(started));
+        started.await();
+        handler.interrupt();
+
+        Assert.assertTrue(handler.join(100 * Utils.DT));
+        Assert.assertEquals(TaskHandler.State.FAILED, handler.getState());
+        Assert.assertTrue(handler.getThrowable() instanceof InterruptedException);
+    }
+
+    @Test
+    public void timeoutTest() throws InterruptedException {
+        TaskExecutor executor = createTaskExecutor();
+        executor.setTimeout("slow", 5 * Utils.DT);
+
+        TaskHandler tagHandler = executor.execute(createSleepTask(new CountDownLatch(1)), "slow");
+        TaskHandler taskHandler = executor.execute(createSleepTask(new CountDownLatch(1)));
+        taskHandler.setTimeout(5 * Utils.DT);
+
+        Assert.assertTrue(tagHandler.join(100 * Utils.DT));
+        Assert.assertTrue(taskHandler.join(100 * Utils.DT));
+        Assert.assertTrue(tagHandler.getThrowable() instanceof InterruptedException);
+        Assert.assertTrue(taskHandler.getThrowable() instanceof InterruptedException);
+    }
+
+    private void testPriority(long agingInterval, long delay, String expected) throws InterruptedException {
+        final Helper helper = new Helper();
+
+        SimpleTaskExecutor executor = new SimpleTaskExecutor(Executors.newSingleThreadExecutor());
+        executor.setSingleHopDispatch(true);
+        executor.setPriority("ui", 10);
+        executor.setAgingInterval(agingInterval);
+
+        // occupy the only working thread
+        final CountDownLatch latch = new CountDownLatch(1);
+        executor.execute(new Task() {
+            @Override
+            public void run(TaskEnvironment env) throws Throwable {
+                latch.await();
+            }
+        });
+
+        Task task = new Task() {
+            @Override
+            public void run(TaskEnvironment env) throws Throwable {
+                helper.append("%s", env.owner().tags());
+            }
+        };
+        executor.execute(task, "bg");
+        executor.execute(task, "bg");
+        Thread.sleep(delay);
+        executor.execute(task, "ui");
+
+        latch.countDown();
+        executor.queue().join();
+
+        helper.check(expected);
+    }
+
+    @Test
+    public void priorityTest() throws InterruptedException {
+        testPriority(1000, 0, "[ui][bg][bg]");
+    }
+
+    @Test
+    public void priorityAgingTest() throws InterruptedException {
+        testPriority(1, 5 * Utils.DT, "[bg][bg][ui]");
+    }
+
+    @Test
+    public void concurrencyLimitTest() throws InterruptedException {
+        TaskExecutor executor = createTaskExecutor();
+        executor.setConcurrencyLimit("db", 1);
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        Task task = new Task() {
+            @Override
+            public void run(TaskEnvironment env) throws Throwable {
+                int count = running.incrementAndGet();
+                if (count > maxRunning.get()) {
+                    maxRunning.set(count);
+                }
+                latch.await();
+                running.decrementAndGet();
+            }
+        };
+
+        executor.execute(task, "db");
+        TaskHandler waitingHandler = executor.execute(task, "db");
+        executor.execute(task, "db", "net");
+        Utils.doSleep(5);
+
+        // waiting tasks don't occupy working threads
+        Assert.assertTrue(executor.execute(new Task() {
+            @Override
+            public void run(TaskEnvironment env) throws Throwable {
+            }
+        }, "ui").join(100 * Utils.DT));
+        Assert.assertEquals(1, executor.queue("db").filter(TaskHandler.State.STARTED).size());
+        Assert.assertEquals(2, executor.queue("db").filter(TaskHandler.State.CREATED).size());
+
+        waitingHandler.interrupt();
+        Assert.assertTrue(waitingHandler.join(100 * Utils.DT));
+        Assert.assertEquals(TaskHandler.State.CANCELED, waitingHandler.getState());
+
+        latch.countDown();
+        Assert.assertTrue(executor.queue("db").join(100 * Utils.DT));
+        Assert.assertEquals(1, maxRunning.get());
+    }
+
+    @Test
+    public void asyncListenerTest() throws InterruptedException {
+        final Helper helper = new Helper();
+        final CountDownLatch latch = new CountDownLatch(1);
+
+        SimpleTaskExecutor executor = createTaskExecutor();
+        executor.setAsyncListenerDelivery(true);
+        executor.addTaskListener(new TaskListener.Default() {
+            @Override
+            public void onCreate(TaskHandler handler) {
+                try {
+                    latch.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+
+        // the slow listener doesn't delay the task
+        TaskHandler handler = executor.execute(new Task() {
+            @Override
+            public void run(TaskEnvironment env) throws Throwable {
+                helper.append("[run]");
+            }
+        }, createLogListener(helper));
+        Assert.assertFalse(handler.join(5 * Utils.DT));
+        Assert.assertEquals(TaskHandler.State.SUCCEED, handler.getState());
+
+        latch.countDown();
+        Assert.assertTrue(handler.join(100 * Utils.DT));
+        helper.check("[run][onCreate][onQueueInsert][onStart]"
+                + "[onFinish][onSucceed][onQueueRemove][onDestroy]");
+    }
+
+    @Test
+    public void asyncListenerErrorTest() throws InterruptedException {
+        SimpleTaskExecutor executor = createTaskExecutor();
+        executor.setAsyncListenerDelivery(true);
+        executor.setErrorHandler(new ErrorHandler() {
+            @Override
+            public void listenerError(TaskListener taskListener, Throwable throwable) {
+                throw new RuntimeException(throwable);
+            }
+        });
+        executor.addTaskListener(new TaskListener.Default() {
+            @Override
+            public void onStart(TaskHandler handler) {
+                throw new RuntimeException();
+            }
+        });
+
+        // a throwing error handler stops neither the task nor the dispatcher
+        Task task = new Task() {
+            @Override
+            public void run(TaskEnvironment env) throws Throwable {
+            }
+        };
+        Assert.assertTrue(executor.execute(task).join(100 * Utils.DT));
+        Assert.assertTrue(executor.execute(task).join(100 * Utils.DT));
+    }
+
+    @Test
+    public void argsTest() throws InterruptedException {
+        final TaskExecutor executor = createTaskExecutor();
+        Task task = new Task() {
+            @Override
+            public void run(TaskEnvironment env) throws Throwable {
+                env.args().put("count", env.args().get("count", 0) + 1);
+            }
+        };
+
+        // each task gets its own copy of arguments with its own lock
+        Pack args = new Pack().put("count", 0);
+        TaskHandler handler1 = executor.execute(task, args);
+        TaskHandler handler2 = executor.execute(task, args);
+        handler1.join();
+        handler2.join();
+        Assert.assertNotSame(executor.lock(), handler1.args().lock());
+        Assert.assertNotSame(handler1.args().lock(), handler2.args().lock());
+        Assert.assertEquals(Integer.valueOf(1), handler1.args().get("count"));
+        Assert.assertEquals(Integer.valueOf(0), args.get("count"));
+
+        // a pack created by the executor is shared
+        Pack sharedArgs = executor.newPack().put("count", 0);
+        TaskHandler handler3 = executor.execute(task, sharedArgs);
+        TaskHandler handler4 = executor.execute(task, sharedArgs);
+        handler3.join();
+        handler4.join();
+        Assert.assertSame(sharedArgs, handler3.args());
+        Assert.assertSame(sharedArgs, handler4.args());
+    }
+
+    @Test
+    public void ownerCacheTest() throws InterruptedException {
+        TaskExecutor executor = createTaskExecutor();
+        Task task = new Task() {
+            @Override
+            public void run(TaskEnvironment env) throws Throwable {
+            }
+        };
+
+        // owner task sets of untagged and single-tag tasks are shared
+        TaskHandler handler1 = executor.execute(task, "tag");
+        TaskHandler handler2 = executor.execute(task, "tag");
+        Assert.assertSame(handler1.owner(), handler2.owner());
+        Assert.assertSame(executor.execute(task).owner(), executor.execute(task).owner());
+        Assert.assertEquals(Utils.set("tag"), handler1.owner().tags());
+
+        // joining a destroyed task doesn't wait
+        Assert.assertTrue(handler1.join(100 * Utils.DT));
+        Assert.assertTrue(handler1.join(1));
+    }
+
+    @Test
+    public void timestampsTest() throws InterruptedException {
+        TaskExecutor executor = createTaskExecutor();
+        TaskHandler handler = executor.execute(new Task() {
+            @Override
+            public void run(TaskEnvironment env) throws Throwable {
+                Thread.sleep(5 * Utils.DT);
+            }
+        }, new TaskListener.Default() {
+            @Override
+            public void onFinish(TaskHandler handler) {
+                try {
+                    Thread.sleep(5 * Utils.DT);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        Assert.assertTrue(handler.join(100 * Utils.DT));
+
+        Assert.assertTrue(handler.getCreateTime() <= handler.getQueueInsertTime());
+        Assert.assertTrue(handler.getQueueInsertTime() <= handler.getStartTime());
+        Assert.assertTrue(handler.getStartTime() < handler.getFinishTime());
+        Assert.assertTrue(handler.getFinishTime() < handler.getDestroyTime());
+        Assert.assertEquals(handler.getStartTime() - handler.getCreateTime(), handler.getQueueWaitTime());
+        Assert.assertTrue(handler.getRunTime() >= TimeUnit.MILLISECONDS.toNanos(5 * Utils.DT));
+        Assert.assertTrue(handler.getListenerTime() >= TimeUnit.MILLISECONDS.toNanos(5 * Utils.DT));
+    }
+
 }
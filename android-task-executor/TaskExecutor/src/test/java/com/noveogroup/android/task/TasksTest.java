@@ -0,0 +1,155 @@
+package com.noveogroup.android.task;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class TasksTest {
+
+    private ExecutorService executorService;
+    private TaskExecutor executor;
+
+    @Before
+    public void setUp() {
+        // composite tasks must not block the only working thread
+        executorService = Executors.newSingleThreadExecutor();
+        executor = new SimpleTaskExecutor(executorService);
+    }
+
+    @After
+    public void tearDown() {
+        executorService.shutdown();
+    }
+
+    private static Task createLogTask(final Helper helper, final String name) {
+        return new Task() {
+            @Override
+            public void run(TaskEnvironment env) throws Throwable {
+                helper.append("[%s]", name);
+            }
+        };
+    }
+
+    @Test
+    public void sequenceTest() throws InterruptedException {
+        Helper helper = new Helper();
+        TaskHandler handler = executor.execute(Tasks.sequence(
+                createLogTask(helper, "1"),
+                createLogTask(helper, "2"),
+                createLogTask(helper, "3")));
+
+        Assert.assertTrue(handler.join(100 * Utils.DT));
+        Assert.assertEquals(TaskHandler.State.SUCCEED, handler.getState());
+        helper.check("[1][2][3]");
+    }
+
+    @Test
+    public void parallelTest() throws InterruptedException {
+        Helper helper = new Helper();
+        TaskHandler handler = executor.execute(Tasks.parallel(
+                Tasks.sequence(createLogTask(helper, "1"), createLogTask(helper, "2")),
+                Tasks.parallel(),
+                Tasks.sequence()));
+
+        Assert.assertTrue(handler.join(100 * Utils.DT));
+        Assert.assertEquals(TaskHandler.State.SUCCEED, handler.getState());
+        helper.check("[1][2]");
+    }
+
+    @Test
+    public void concurrencyLimitTest() throws InterruptedException {
+        // the children share the tags of the deferred composite task
+        executor.setConcurrencyLimit("db", 1);
+        Helper helper = new Helper();
+        TaskHandler handler = executor.execute(Tasks.sequence(
+                createLogTask(helper, "1"),
+                Tasks.parallel(createLogTask(helper, "2")),
+                createLogTask(helper, "3")), "db");
+
+        Assert.assertTrue(handler.join(100 * Utils.DT));
+        Assert.assertEquals(TaskHandler.State.SUCCEED, handler.getState());
+        helper.check("[1][2][3]");
+    }
+
+    @Test
+    public void interruptTest() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        Helper helper = new Helper();
+        TaskHandler handler = executor.execute(Tasks.sequence(new Task() {
+            @Override
+            public void run(TaskEnvironment env) throws Throwable {
+                latch.await();
+            }
+        }, createLogTask(helper, "2")));
+
+        Utils.doSleep(5);
+        handler.interrupt();
+        Assert.assertEquals(TaskHandler.State.STARTED, handler.getState());
+        latch.countDown();
+
+        Assert.assertTrue(handler.join(100 * Utils.DT));
+        Assert.assertTrue(handler.getThrowable() instanceof InterruptedException);
+        helper.check("");
+    }
+
+    @Test
+    public void deferTest() throws InterruptedException {
+        final Throwable error = new Exception();
+        TaskHandler handler = executor.execute(new Task() {
+            @Override
+            public void run(TaskEnvironment env) throws Throwable {
+                final Continuation continuation = env.defer();
+                new Thread() {
+                    @Override
+                    public void run() {
+                        Utils.doSleep(5);
+                        continuation.fail(error);
+                    }
+                }.start();
+            }
+        });
+
+        Assert.assertFalse(handler.join(2 * Utils.DT));
+        Assert.assertEquals(TaskHandler.State.STARTED, handler.getState());
+        Assert.assertTrue(handler.join(100 * Utils.DT));
+        Assert.assertEquals(TaskHandler.State.FAILED, handler.getState());
+        Assert.assertSame(error, handler.getThrowable());
+    }
+
+    @Test
+    public void blockingFallbackTest() throws InterruptedException {
+        ExecutorService executorService = Executors.newCachedThreadPool();
+        try {
+            // the composite tasks block their working threads instead
+            TaskExecutor executor = new SimpleTaskExecutor(executorService) {
+                @Override
+                protected TaskEnvironment createTaskEnvironment(TaskHandler taskHandler) {
+                    return new SimpleTaskEnvironment(taskHandler) {
+                        @Override
+                        public Continuation defer() {
+                            throw new UnsupportedOperationException();
+                        }
+                    };
+                }
+            };
+
+            Helper helper = new Helper();
+            TaskHandler handler = executor.execute(Tasks.sequence(
+                    createLogTask(helper, "1"),
+                    Tasks.parallel(createLogTask(helper, "2")),
+                    createLogTask(helper, "3")));
+
+            Assert.assertTrue(handler.join(100 * Utils.DT));
+            Assert.assertEquals(TaskHandler.State.SUCCEED, handler.getState());
+            helper.check("[1][2][3]");
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,97 @@
+package com.noveogroup.android.task;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ThreadPerTaskExecutorTest {
+
+    private static void testBlockingTasks(ThreadFactory threadFactory) throws InterruptedException {
+        TaskExecutor executor = new ThreadPerTaskExecutor(threadFactory);
+
+        // every task blocks until all of them are started
+        int taskCount = 100;
+        final CountDownLatch latch = new CountDownLatch(taskCount);
+        for (int i = 0; i < taskCount; i++) {
+            executor.execute(new Task() {
+                @Override
+                public void run(TaskEnvironment env) throws Throwable {
+                    latch.countDown();
+                    latch.await();
+                }
+            }, "io");
+        }
+
+        Assert.assertTrue(executor.queue("io").join(100 * Utils.DT));
+        Assert.assertEquals(0, latch.getCount());
+    }
+
+    @Test
+    public void blockingTest() throws InterruptedException {
+        testBlockingTasks(Executors.defaultThreadFactory());
+    }
+
+    @Test
+    public void threadCountTest() throws InterruptedException {
+        final AtomicInteger threadCount = new AtomicInteger();
+        TaskExecutor executor = new ThreadPerTaskExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                threadCount.incrementAndGet();
+                return new Thread(runnable);
+            }
+        });
+
+        // each task gets exactly one thread
+        for (int i = 0; i < 10; i++) {
+            executor.execute(new Task() {
+                @Override
+                public void run(TaskEnvironment env) throws Throwable {
+                }
+            });
+        }
+        Assert.assertTrue(executor.queue().join(100 * Utils.DT));
+        Assert.assertEquals(10, threadCount.get());
+    }
+
+    @Test
+    public void shutdownNowTest() throws InterruptedException {
+        ThreadPerTaskExecutor.ThreadPerTaskExecutorService executorService
+                = new ThreadPerTaskExecutor.ThreadPerTaskExecutorService(Executors.defaultThreadFactory());
+        final CountDownLatch startLatch = new CountDownLatch(2);
+        final AtomicInteger interruptCount = new AtomicInteger();
+        for (int i = 0; i < 2; i++) {
+            executorService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    startLatch.countDown();
+                    try {
+                        Thread.sleep(1000 * Utils.DT);
+                    } catch (InterruptedException e) {
+                        interruptCount.incrementAndGet();
+                    }
+                }
+            });
+        }
+        Assert.assertTrue(startLatch.await(100 * Utils.DT, TimeUnit.MILLISECONDS));
+
+        // the running threads are interrupted
+        Assert.assertTrue(executorService.shutdownNow().isEmpty());
+        Assert.assertTrue(executorService.awaitTermination(100 * Utils.DT, TimeUnit.MILLISECONDS));
+        Assert.assertEquals(2, interruptCount.get());
+    }
+
+    @Test
+    public void virtualThreadTest() throws InterruptedException {
+        ThreadFactory threadFactory = ThreadPerTaskExecutor.newVirtualThreadFactory();
+        Assume.assumeNotNull(threadFactory);
+        testBlockingTasks(threadFactory);
+    }
+
+}
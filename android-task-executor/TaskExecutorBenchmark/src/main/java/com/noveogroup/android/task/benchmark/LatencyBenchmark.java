@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2014 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.noveogroup.android.task.benchmark;
+
+import com.noveogroup.android.task.SimpleTaskExecutor;
+import com.noveogroup.android.task.Task;
+import com.noveogroup.android.task.TaskEnvironment;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures latency of a single task executed by {@link SimpleTaskExecutor}
+ * from the call of {@code execute()} to the return of {@code join()},
+ * compared with a runnable submitted to a bare
+ * {@link java.util.concurrent.ThreadPoolExecutor}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class LatencyBenchmark {
+
+    /**
+     * The number of working threads.
+     */
+    @Param({"1", "4"})
+    public int threads;
+
+    /**
+     * The amount of work done by each task in {@link Blackhole#consumeCPU(long)} tokens.
+     */
+    @Param({"0", "1000"})
+    public int taskSize;
+
+    private ExecutorService executorService;
+    private ExecutorService singleHopExecutorService;
+    private ExecutorService bareExecutorService;
+    private SimpleTaskExecutor executor;
+    private SimpleTaskExecutor singleHopExecutor;
+
+    private final Task task = new Task() {
+        @Override
+        public void run(TaskEnvironment env) throws Throwable {
+            Blackhole.consumeCPU(taskSize);
+        }
+    };
+
+    private final Runnable runnable = new Runnable() {
+        @Override
+        public void run() {
+            Blackhole.consumeCPU(taskSize);
+        }
+    };
+
+    @Setup
+    public void setUp() {
+        executorService = Executors.newFixedThreadPool(threads);
+        singleHopExecutorService = Executors.newFixedThreadPool(threads);
+        bareExecutorService = Executors.newFixedThreadPool(threads);
+
+        executor = new SimpleTaskExecutor(executorService);
+        singleHopExecutor = new SimpleTaskExecutor(singleHopExecutorService);
+        singleHopExecutor.setSingleHopDispatch(true);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executorService.shutdown();
+        singleHopExecutorService.shutdown();
+        bareExecutorService.shutdown();
+    }
+
+    @Benchmark
+    public void taskExecutor() throws InterruptedException {
+        executor.execute(task).join();
+    }
+
+    @Benchmark
+    public void singleHopTaskExecutor() throws InterruptedException {
+        singleHopExecutor.execute(task).join();
+    }
+
+    @Benchmark
+    public void threadPoolExecutor() throws InterruptedException, ExecutionException {
+        bareExecutorService.submit(runnable).get();
+    }
+
+}
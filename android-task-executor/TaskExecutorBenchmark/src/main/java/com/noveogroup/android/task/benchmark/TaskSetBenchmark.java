@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2014 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.noveogroup.android.task.benchmark;
+
+import com.noveogroup.android.task.SimpleTaskExecutor;
+import com.noveogroup.android.task.Task;
+import com.noveogroup.android.task.TaskEnvironment;
+import com.noveogroup.android.task.TaskHandler;
+import com.noveogroup.android.task.TaskListener;
+import com.noveogroup.android.task.TaskSet;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of queries and operations on task sets depending on
+ * the number of live task handlers in the queue, the number of distinct
+ * tags and the number of tags of each task. The tasks are never run, so
+ * all of them stay {@link TaskHandler.State#CREATED} in the queue.
+ * <p/>
+ * Queries select a few "rare" tasks hidden in the queue and consume
+ * the result, so they measure selection through the tag index and
+ * creation of counters of fresh task sets. As many distinct task sets as
+ * there are handlers are queried and kept alive, so the cost of updating
+ * counters is measured as well.
+ * <p/>
+ * The scaling of these operations is guarded by the {@code checkScaling}
+ * task of this module.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class TaskSetBenchmark {
+
+    private static final int RARE_COUNT = 10;
+    private static final int VICTIM_COUNT = 10;
+
+    /**
+     * The number of live task handlers in the queue.
+     */
+    @Param({"10", "1000", "100000"})
+    public int handlers;
+
+    /**
+     * The number of distinct tags.
+     */
+    @Param({"1", "10", "1000"})
+    public int tags;
+
+    /**
+     * The number of tags of each task. Neighbouring tasks share tags,
+     * so more tags per task means more overlap between task sets.
+     */
+    @Param({"1", "3"})
+    public int tagsPerTask;
+
+    private ExecutorService executorService;
+    private SimpleTaskExecutor executor;
+    private TaskSet tagSet;
+    private final List<TaskSet> queriedSets = new ArrayList<TaskSet>();
+
+    private final Task task = new Task() {
+        @Override
+        public void run(TaskEnvironment env) throws Throwable {
+        }
+    };
+
+    @Setup
+    public void setUp() {
+        executorService = Executors.newSingleThreadExecutor();
+        executor = new SimpleTaskExecutor(executorService) {
+            @Override
+            protected void submit(Runnable runnable) {
+                // tasks are never run so they stay in the queue
+            }
+        };
+
+        for (int i = 0; i < handlers; i++) {
+            List<String> taskTags = new ArrayList<String>(tagsPerTask);
+            for (int j = 0; j < tagsPerTask; j++) {
+                taskTags.add("tag" + (i + j) % tags);
+            }
+            executor.execute(task, executor.args(), new ArrayList<TaskListener>(0), taskTags);
+        }
+        for (int i = 0; i < RARE_COUNT; i++) {
+            executor.execute(task, "tag0", "rare");
+        }
+
+        // distinct task sets whose counters are kept up to date
+        for (int i = 0; i < handlers; i++) {
+            TaskSet queriedSet = executor.queue("item" + i);
+            queriedSet.isEmpty();
+            queriedSets.add(queriedSet);
+        }
+
+        tagSet = executor.queue("tag0");
+    }
+
+    @TearDown
+    public void tearDown() {
+        executorService.shutdown();
+        queriedSets.clear();
+    }
+
+    private static int count(TaskSet taskSet) {
+        int count = 0;
+        for (TaskHandler ignored : taskSet) {
+            count++;
+        }
+        return count;
+    }
+
+    @Benchmark
+    public int queue() {
+        return count(executor.queue("rare"));
+    }
+
+    @Benchmark
+    public int sub() {
+        return count(tagSet.sub("rare"));
+    }
+
+    @Benchmark
+    public int filter() {
+        return count(executor.queue("rare").filter(TaskHandler.State.CREATED));
+    }
+
+    /**
+     * Sizes a fresh task set, which may need a new counter.
+     */
+    @Benchmark
+    public int size() {
+        return executor.queue("rare").size();
+    }
+
+    @Benchmark
+    public boolean isEmpty() {
+        return executor.queue("rare").isEmpty();
+    }
+
+    /**
+     * Joins a fresh task set having no tasks in the queue.
+     */
+    @Benchmark
+    public boolean join() throws InterruptedException {
+        return executor.queue("absent").join(1);
+    }
+
+    /**
+     * Executes a few tasks, then interrupts and joins them while the other
+     * tasks stay in the queue and the counters of the queried task sets
+     * are kept up to date.
+     */
+    @Benchmark
+    @OperationsPerInvocation(VICTIM_COUNT)
+    public void interrupt() throws InterruptedException {
+        TaskSet victims = executor.queue("victim");
+        for (int i = 0; i < VICTIM_COUNT; i++) {
+            victims.execute(task);
+        }
+        victims.interrupt();
+        victims.join();
+    }
+
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2014 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.noveogroup.android.task.benchmark;
+
+import com.noveogroup.android.task.SimpleTaskExecutor;
+import com.noveogroup.android.task.Task;
+import com.noveogroup.android.task.TaskEnvironment;
+import com.noveogroup.android.task.TaskExecutor;
+import com.noveogroup.android.task.TaskHandler;
+import com.noveogroup.android.task.TaskListener;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures throughput of {@link SimpleTaskExecutor}: a batch of tasks is
+ * executed and the benchmark waits until all of them are destroyed.
+ * The batch is executed task by task in two-hop and single-hop dispatch
+ * modes and at once using {@link TaskExecutor#executeAll(java.util.Collection, String...)}.
+ * The same batch submitted to a bare {@link java.util.concurrent.ThreadPoolExecutor}
+ * shows the overhead of the task executor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ThroughputBenchmark {
+
+    private static final int BATCH_SIZE = 1000;
+
+    /**
+     * The number of working threads.
+     */
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    /**
+     * The amount of work done by each task in {@link Blackhole#consumeCPU(long)} tokens.
+     */
+    @Param({"0", "100", "10000"})
+    public int taskSize;
+
+    private ExecutorService executorService;
+    private ExecutorService singleHopExecutorService;
+    private ExecutorService bareExecutorService;
+    private SimpleTaskExecutor executor;
+    private SimpleTaskExecutor singleHopExecutor;
+    private volatile CountDownLatch latch;
+
+    private final Task task = new Task() {
+        @Override
+        public void run(TaskEnvironment env) throws Throwable {
+            Blackhole.consumeCPU(taskSize);
+        }
+    };
+
+    private final List<Task> batch = Collections.nCopies(BATCH_SIZE, task);
+
+    private final Runnable runnable = new Runnable() {
+        @Override
+        public void run() {
+            Blackhole.consumeCPU(taskSize);
+            latch.countDown();
+        }
+    };
+
+    private final TaskListener listener = new TaskListener.Default() {
+        @Override
+        public void onDestroy(TaskHandler handler) {
+            latch.countDown();
+        }
+    };
+
+    @Setup
+    public void setUp() {
+        executorService = Executors.newFixedThreadPool(threads);
+        singleHopExecutorService = Executors.newFixedThreadPool(threads);
+        bareExecutorService = Executors.newFixedThreadPool(threads);
+
+        executor = new SimpleTaskExecutor(executorService);
+        executor.addTaskListener(listener);
+        singleHopExecutor = new SimpleTaskExecutor(singleHopExecutorService);
+        singleHopExecutor.setSingleHopDispatch(true);
+        singleHopExecutor.addTaskListener(listener);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executorService.shutdown();
+        singleHopExecutorService.shutdown();
+        bareExecutorService.shutdown();
+    }
+
+    private void executeBatch(TaskExecutor executor) throws InterruptedException {
+        latch = new CountDownLatch(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            executor.execute(task);
+        }
+        latch.await();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void taskExecutor() throws InterruptedException {
+        executeBatch(executor);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void singleHopTaskExecutor() throws InterruptedException {
+        executeBatch(singleHopExecutor);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void batchTaskExecutor() throws InterruptedException {
+        latch = new CountDownLatch(BATCH_SIZE);
+        executor.executeAll(batch);
+        latch.await();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void threadPoolExecutor() throws InterruptedException {
+        latch = new CountDownLatch(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            bareExecutorService.execute(runnable);
+        }
+        latch.await();
+    }
+
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2014 Noveo Group
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * Except as contained in this notice, the name(s) of the above copyright holders
+ * shall not be used in advertising or otherwise to promote the sale, use or
+ * other dealings in this Software without prior written authorization.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL
+ * THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+
+package com.noveogroup.android.task.benchmark;
+
+import com.noveogroup.android.task.SimpleTaskExecutor;
+import com.noveogroup.android.task.Task;
+import com.noveogroup.android.task.TaskEnvironment;
+import com.noveogroup.android.task.TaskExecutor;
+import com.noveogroup.android.task.TaskHandler;
+import com.noveogroup.android.task.TaskListener;
+import com.noveogroup.android.task.ThreadPerTaskExecutor;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time to complete a big batch of mostly-blocking tasks:
+ * the tasks sleeping for a while are executed and the benchmark waits until
+ * all of them are destroyed. A fixed pool of platform threads is compared
+ * with {@link ThreadPerTaskExecutor} running each task in a virtual thread.
+ * If the platform doesn't support virtual threads a platform thread is
+ * created for each task instead.
+ * <p/>
+ * A batch of 100000 tasks takes seconds, so each batch is measured once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class VirtualThreadBenchmark {
+
+    /**
+     * The number of tasks in the batch.
+     */
+    @Param({"100000"})
+    public int tasks;
+
+    /**
+     * The number of working threads of the fixed pool.
+     */
+    @Param({"8", "64"})
+    public int threads;
+
+    /**
+     * The time each task sleeps in milliseconds.
+     */
+    @Param({"1"})
+    public long sleepTime;
+
+    private ExecutorService executorService;
+    private SimpleTaskExecutor fixedPoolExecutor;
+    private ThreadPerTaskExecutor threadPerTaskExecutor;
+    private volatile CountDownLatch latch;
+
+    private final Task task = new Task() {
+        @Override
+        public void run(TaskEnvironment env) throws Throwable {
+            Thread.sleep(sleepTime);
+        }
+    };
+
+    private final TaskListener listener = new TaskListener.Default() {
+        @Override
+        public void onDestroy(TaskHandler handler) {
+            latch.countDown();
+        }
+    };
+
+    @Setup
+    public void setUp() {
+        executorService = Executors.newFixedThreadPool(threads);
+        fixedPoolExecutor = new SimpleTaskExecutor(executorService);
+        fixedPoolExecutor.addTaskListener(listener);
+
+        ThreadFactory threadFactory = ThreadPerTaskExecutor.newVirtualThreadFactory();
+        if (threadFactory == null) {
+            threadFactory = Executors.defaultThreadFactory();
+        }
+        threadPerTaskExecutor = new ThreadPerTaskExecutor(threadFactory);
+        threadPerTaskExecutor.addTaskListener(listener);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executorService.shutdown();
+        threadPerTaskExecutor.shutdown();
+    }
+
+    private void executeBatch(TaskExecutor executor) throws InterruptedException {
+        latch = new CountDownLatch(tasks);
+        for (int i = 0; i < tasks; i++) {
+            executor.execute(task);
+        }
+        latch.await();
+    }
+
+    @Benchmark
+    public void fixedPool() throws InterruptedException {
+        executeBatch(fixedPoolExecutor);
+    }
+
+    @Benchmark
+    public void threadPerTask() throws InterruptedException {
+        executeBatch(threadPerTaskExecutor);
+    }
+
+}